@@ -0,0 +1,8 @@
+package com.alibaba.datax.plugin.reader.nebulagraphreader;
+
+public class Constants {
+    public static final String READ_MODE_LOOKUP = "lookup";
+    public static final String READ_MODE_SCAN = "scan";
+    // scan模式下每次从storaged拉取的行数
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+}
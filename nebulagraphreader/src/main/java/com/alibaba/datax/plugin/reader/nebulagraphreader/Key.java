@@ -13,4 +13,18 @@ public class Key {
     public static final String QUERY_SQL = "querySql";
     public static final String MANDATORY_ENCODING = "mandatoryEncoding";
     public static final String WHERE = "where";
+
+    // 直接扫描storaged分片
+    public static final String READ_MODE = "readMode";
+    public static final String META_ADDRESS = "metaAddress";
+    // 由Job.split分配给Task的分片编号
+    public static final String PARTITIONS = "partitions";
+    // lookup模式下按该属性的取值范围切分Task 需为带索引的整数属性
+    public static final String SPLIT_PK = "splitPk";
+    // lookup模式下每条LOOKUP语句读取的大约行数 需配置splitPk 0为不限制
+    public static final String PAGE_SIZE = "pageSize";
+    // 由Job.split分配给Task的splitPk取值范围[splitStart, splitLast]及每条LOOKUP语句查询的取值宽度
+    public static final String SPLIT_START = "splitStart";
+    public static final String SPLIT_LAST = "splitLast";
+    public static final String WINDOW_WIDTH = "windowWidth";
 }
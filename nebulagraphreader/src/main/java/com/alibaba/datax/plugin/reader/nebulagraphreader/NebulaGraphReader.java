@@ -5,17 +5,16 @@ import com.alibaba.datax.common.exception.DataXException;
 import com.alibaba.datax.common.plugin.RecordSender;
 import com.alibaba.datax.common.spi.Reader;
 import com.alibaba.datax.common.util.Configuration;
-import com.vesoft.nebula.client.graph.data.DateWrapper;
 import com.vesoft.nebula.client.graph.data.ValueWrapper;
-import com.vesoft.nebula.client.graph.exception.InvalidValueException;
 import com.vesoft.nebula.jdbc.impl.NebulaDriver;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -52,6 +51,31 @@ public class NebulaGraphReader extends Reader {
                         "Parameter [" + Key.CONNECTION + "] is not set");
             }
 
+            // check readMode
+            String readMode = this.originalConfig.getString(Key.READ_MODE, Constants.READ_MODE_LOOKUP);
+            if (Constants.READ_MODE_SCAN.equalsIgnoreCase(readMode)) {
+                List<String> metaAddress = this.originalConfig.getList(Key.META_ADDRESS, String.class);
+                if (metaAddress == null || metaAddress.isEmpty()) {
+                    throw DataXException.asDataXException(NebulaGraphReaderErrorCode.REQUIRED_VALUE,
+                            "Parameter [" + Key.META_ADDRESS + "] is not set, which is required in scan mode");
+                }
+                PartitionScanner.parseAddresses(metaAddress);
+                // scan模式按分片读取全部数据 无法执行过滤条件
+                if (StringUtils.isNotBlank(this.originalConfig.getString(Key.WHERE))) {
+                    throw DataXException.asDataXException(NebulaGraphReaderErrorCode.ILLEGAL_VALUE,
+                            "Parameter [" + Key.WHERE + "] is not supported in scan mode");
+                }
+            } else if (!Constants.READ_MODE_LOOKUP.equalsIgnoreCase(readMode)) {
+                throw DataXException.asDataXException(NebulaGraphReaderErrorCode.ILLEGAL_VALUE,
+                        "Parameter [" + Key.READ_MODE + "] should be lookup or scan, but got " + readMode);
+            } else if (this.originalConfig.getInt(Key.PAGE_SIZE, 0) > 0
+                    && StringUtils.isBlank(this.originalConfig.getString(Key.SPLIT_PK))) {
+                // LOOKUP无法从游标处继续扫描索引 只能按splitPk的取值范围分批查询
+                throw DataXException.asDataXException(NebulaGraphReaderErrorCode.REQUIRED_VALUE,
+                        "Parameter [" + Key.PAGE_SIZE + "] requires [" + Key.SPLIT_PK + "] in lookup mode, "
+                                + "or use [" + Key.READ_MODE + "] scan to read large tables with bounded memory");
+            }
+
             for (int i = 0; i < conns.size(); i++) {
                 Configuration conn = conns.get(i);
                 // check jdbcUrl
@@ -60,13 +84,24 @@ public class NebulaGraphReader extends Reader {
                     throw DataXException.asDataXException(NebulaGraphReaderErrorCode.REQUIRED_VALUE,
                             "Parameter [" + Key.JDBC_URL + "] of connection [" + (i+1) + "] is not set");
                 }
-                // check table or querySql
+                // scan模式按table和edgeType扫描分片 不支持querySql
+                boolean hasTable = !getList(conn, Key.TABLE).isEmpty() || !getList(conn, Key.EDGE_TYPE).isEmpty();
                 List<Object> querySqlList = conn.getList(Key.QUERY_SQL);
+                if (isScanMode(this.originalConfig)) {
+                    if (querySqlList != null && !querySqlList.isEmpty()) {
+                        throw DataXException.asDataXException(NebulaGraphReaderErrorCode.ILLEGAL_VALUE,
+                                "Parameter [" + Key.QUERY_SQL + "] of connection[" + (i+1) + "] is not supported in scan mode");
+                    }
+                    if (!hasTable) {
+                        throw DataXException.asDataXException(NebulaGraphReaderErrorCode.REQUIRED_VALUE,
+                                "Parameter [" + Key.TABLE + "] or [" + Key.EDGE_TYPE + "] of connection[" + (i+1) + "] is required in scan mode");
+                    }
+                }
+                // check table, edgeType or querySql
                 if (querySqlList == null || querySqlList.isEmpty()) {
-                    List<Object> table = conn.getList(Key.TABLE);
-                    if (table == null || table.isEmpty()) {
+                    if (!hasTable) {
                         throw DataXException.asDataXException(NebulaGraphReaderErrorCode.REQUIRED_VALUE,
-                                "Parameter both [" + Key.TABLE + "] and [" + Key.QUERY_SQL + "] of connection[" + (i+1) + "] are note set");
+                                "Parameter [" + Key.TABLE + "], [" + Key.EDGE_TYPE + "] and [" + Key.QUERY_SQL + "] of connection[" + (i+1) + "] are note set");
                     }
                 }
             }
@@ -77,30 +112,60 @@ public class NebulaGraphReader extends Reader {
 
         }
 
-        // 根据jdbcUrl的个数以及config的个数来决定job切分的个数
-        // 一个Task对应一个jdbcUrl
-        // TODO: 会出现querySql列表和jdbcUrl对应的图空间不一致 需要进行相应的异常处理或者过滤
+        // 每个jdbcUrl的每个标签、边类型或querySql语句至少对应一个Task, 再按adviceNumber切分:
+        // scan模式按分片切分 lookup模式按splitPk的取值范围切分
         @Override
         public List<Configuration> split(int adviceNumber) {
-            // ConfigList
-            List<Configuration> readerSplitConfig = new ArrayList<>();
-            List<Configuration> connList = this.originalConfig.getListConfiguration(Key.CONNECTION);
-            // 遍历connection字段 获取jdbcUrl, table or querySql (均为json数组)
-            for (Configuration conn : connList) {
-                List<String> jdbcUrlList = conn.getList(Key.JDBC_URL, String.class);
-                for (String jdbcUrl : jdbcUrlList) {
-                    Configuration cloneConfig = this.originalConfig.clone();
-                    cloneConfig.set(Key.JDBC_URL, jdbcUrl);
-                    cloneConfig.set(Key.TABLE, conn.getList(Key.TABLE));
-                    cloneConfig.set(Key.QUERY_SQL, conn.getList(Key.QUERY_SQL));
-                    cloneConfig.remove(Key.CONNECTION);
-                    readerSplitConfig.add(cloneConfig);
+            TaskSplitter splitter = new TaskSplitter(space -> PartitionScanner.loadPartitions(
+                    PartitionScanner.parseAddresses(this.originalConfig.getList(Key.META_ADDRESS, String.class)), space),
+                    this::loadRange);
+            return splitter.split(this.originalConfig, adviceNumber);
+        }
+
+        // 执行TaskSplitter生成的min/max/count查询 splitPk须为整数属性
+        private long[] loadRange(String jdbcUrl, String nGql) {
+            String username = this.originalConfig.getString(Key.USERNAME);
+            String password = this.originalConfig.getString(Key.PASSWORD);
+            try {
+                NebulaDriver defaultDriver = new NebulaDriver();
+            } catch (SQLException e) {
+                throw DataXException.asDataXException(NebulaGraphReaderErrorCode.CONNECTION_FAILED, e.getMessage(), e);
+            }
+            try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+                 Statement stmt = conn.createStatement()) {
+                LOG.debug(">>> " + nGql);
+                ResultSet rs = stmt.executeQuery(nGql);
+                if (!rs.next()) {
+                    return null;
+                }
+                ValueWrapper min = (ValueWrapper) rs.getObject(1);
+                ValueWrapper max = (ValueWrapper) rs.getObject(2);
+                if (min.isNull() || max.isNull()) {
+                    return null;
                 }
+                if (!min.isLong() || !max.isLong()) {
+                    throw DataXException.asDataXException(NebulaGraphReaderErrorCode.ILLEGAL_VALUE,
+                            "Parameter [" + Key.SPLIT_PK + "] should be an integer property, but got " + min);
+                }
+                return new long[]{min.asLong(), max.asLong(), ((ValueWrapper) rs.getObject(3)).asLong()};
+            } catch (SQLException e) {
+                throw DataXException.asDataXException(NebulaGraphReaderErrorCode.RUNTIME_EXCEPTION,
+                        "Failed to execute " + nGql + ": " + e.getMessage(), e);
             }
-            return readerSplitConfig;
         }
     }
 
+    // 是否直接扫描storaged分片
+    static boolean isScanMode(Configuration conf) {
+        return Constants.READ_MODE_SCAN.equalsIgnoreCase(conf.getString(Key.READ_MODE, Constants.READ_MODE_LOOKUP));
+    }
+
+    // 未配置时返回空列表
+    static List<String> getList(Configuration conf, String key) {
+        List<String> list = conf.getList(key, String.class);
+        return list == null ? new ArrayList<>() : list;
+    }
+
     public static class Task extends Reader.Task {
 
         private static final Logger LOG = LoggerFactory.getLogger(Task.class);
@@ -108,12 +173,20 @@ public class NebulaGraphReader extends Reader {
         private Configuration readerSliceConfig;
         private String mandatoryEncoding;
         private Connection conn;
+        private PartitionScanner scanner;
+        private List<Integer> partitions;
 
         private List<String> tables;
+        private List<String> edgeTypes;
         private List<String> columns;
         private List<String> querySql;
 
         private String where;
+        // 配置了pageSize时由Job.split下发 按取值窗口依次查询
+        private String splitPk;
+        private Long splitStart;
+        private long splitLast;
+        private long windowWidth;
         private final int LOOKUP = 0, MATCH = 1, GO = 2, FETCH = 3;
 
         // 加载jdbc驱动类
@@ -138,6 +211,20 @@ public class NebulaGraphReader extends Reader {
             String password = readerSliceConfig.getString(Key.PASSWORD);
             String jdbcUrl = readerSliceConfig.getString(Key.JDBC_URL);
 
+            this.tables = getList(readerSliceConfig, Key.TABLE);
+            this.edgeTypes = getList(readerSliceConfig, Key.EDGE_TYPE);
+            this.columns = readerSliceConfig.getList(Key.COLUMN, String.class);
+            this.mandatoryEncoding = readerSliceConfig.getString(Key.MANDATORY_ENCODING, "UTF-8");
+            if (isScanMode(readerSliceConfig)) {
+                // scan模式直接连接storaged 不需要JDBC连接
+                this.partitions = readerSliceConfig.getList(Key.PARTITIONS, Integer.class);
+                this.scanner = new PartitionScanner(
+                        PartitionScanner.parseAddresses(readerSliceConfig.getList(Key.META_ADDRESS, String.class)),
+                        PartitionScanner.parseSpace(jdbcUrl), columns,
+                        readerSliceConfig.getInt(Key.BATCH_SIZE, Constants.DEFAULT_BATCH_SIZE),
+                        Charset.forName(mandatoryEncoding));
+                return;
+            }
             try {
                 NebulaDriver defaultDriver = new NebulaDriver();
                 this.conn = DriverManager.getConnection(jdbcUrl, username, password);
@@ -145,15 +232,19 @@ public class NebulaGraphReader extends Reader {
                 throw DataXException.asDataXException(NebulaGraphReaderErrorCode.CONNECTION_FAILED,
                         "Parameter [" + Key.JDBC_URL + "] : " + jdbcUrl + "failed to connect due to: " + e.getMessage(), e);
             }
-            this.tables = readerSliceConfig.getList(Key.TABLE, String.class);
-            this.columns = readerSliceConfig.getList(Key.COLUMN, String.class);
             this.querySql = readerSliceConfig.getList(Key.QUERY_SQL, String.class);
-            this.mandatoryEncoding = readerSliceConfig.getString(Key.MANDATORY_ENCODING, "UTF-8");
             this.where = readerSliceConfig.getString(Key.WHERE);
+            this.splitPk = readerSliceConfig.getString(Key.SPLIT_PK);
+            this.splitStart = readerSliceConfig.getLong(Key.SPLIT_START);
+            this.splitLast = readerSliceConfig.getLong(Key.SPLIT_LAST, 0L);
+            this.windowWidth = readerSliceConfig.getLong(Key.WINDOW_WIDTH, 0L);
         }
 
         @Override
         public void destroy() {
+            if (scanner != null) {
+                scanner.close();
+            }
             try {
                 if (conn != null) conn.close();
             } catch (SQLException e) {
@@ -163,6 +254,30 @@ public class NebulaGraphReader extends Reader {
 
         @Override
         public void startRead(RecordSender recordSender) {
+            if (scanner != null) {
+                // 依次扫描每个标签在分配给当前Task的各个分片
+                for (String table : tables) {
+                    for (int part : partitions) {
+                        scanner.scanTag(table, part, recordSender);
+                    }
+                }
+                for (String edgeType : edgeTypes) {
+                    for (int part : partitions) {
+                        scanner.scanEdge(edgeType, part, recordSender);
+                    }
+                }
+                return;
+            }
+            // 按splitPk的取值窗口依次查询 每次只持有一个窗口的结果集
+            if (windowWidth > 0 && (querySql == null || querySql.isEmpty())) {
+                for (String table : tables) {
+                    readWindows(table, false, recordSender);
+                }
+                for (String edgeType : edgeTypes) {
+                    readWindows(edgeType, true, recordSender);
+                }
+                return;
+            }
             // 生成查询nGql集合
             List<String> nGqlList = new ArrayList<>();
 
@@ -176,6 +291,9 @@ public class NebulaGraphReader extends Reader {
                         nGqlList.add(readQueryTagBynGql(table, true, 0));
                     }
                 }
+                for (String edgeType : edgeTypes) {
+                    nGqlList.add(queryEdgeByLookUpnGql(edgeType, StringUtils.isBlank(where) ? "" : " WHERE " + where));
+                }
             } else {
                 nGqlList.addAll(querySql);
             }
@@ -185,8 +303,11 @@ public class NebulaGraphReader extends Reader {
                 try (Statement stmt = conn.createStatement()) {
                     LOG.debug(">>> " + nGql);
                     ResultSet rs = stmt.executeQuery(nGql);
+                    // 列数和各列的转换器在一个查询内只确定一次
+                    int columnCount = rs.getMetaData().getColumnCount();
+                    ValueDecoder decoder = new ValueDecoder(Charset.forName(mandatoryEncoding));
                     while (rs.next()) {
-                        Record record = buildRecord(recordSender, rs, mandatoryEncoding);
+                        Record record = buildRecord(recordSender, rs, columnCount, decoder);
                         recordSender.sendToWriter(record);
                     }
                 } catch (SQLException e) {
@@ -195,12 +316,41 @@ public class NebulaGraphReader extends Reader {
             }
         }
 
+        // 在where后依次追加各窗口的范围条件 窗口的结果集读取完毕后再查询下一个窗口
+        private void readWindows(String table, boolean edge, RecordSender recordSender) {
+            Iterator<String> windows = TaskSplitter.windows(table + "." + splitPk, splitStart, splitLast, windowWidth);
+            ValueDecoder decoder = new ValueDecoder(Charset.forName(mandatoryEncoding));
+            int windowCount = 0;
+            long total = 0;
+            while (windows.hasNext()) {
+                String window = windows.next();
+                String condition = StringUtils.isBlank(where) ? window
+                        : (window.isEmpty() ? where : where + " AND " + window);
+                String whr = condition.isEmpty() ? "" : " WHERE " + condition;
+                String nGql = edge ? queryEdgeByLookUpnGql(table, whr) : queryTagByLookUpnGql(table, whr);
+                try (Statement stmt = conn.createStatement()) {
+                    LOG.debug(">>> " + nGql);
+                    ResultSet rs = stmt.executeQuery(nGql);
+                    int columnCount = rs.getMetaData().getColumnCount();
+                    while (rs.next()) {
+                        recordSender.sendToWriter(buildRecord(recordSender, rs, columnCount, decoder));
+                        total++;
+                    }
+                } catch (SQLException e) {
+                    throw DataXException.asDataXException(NebulaGraphReaderErrorCode.RUNTIME_EXCEPTION,
+                            "Failed to execute " + nGql + ": " + e.getMessage(), e);
+                }
+                windowCount++;
+            }
+            LOG.info("Read " + total + " rows of " + table + " in " + windowCount + " windows of " + splitPk + ".");
+        }
+
         // 内置查询方法：Tag 默认采用LOOKUP语句
         // TODO
         public String readQueryTagBynGql(String tag, boolean isWhereSupported, int queryMode) {
             String whr = "";
             if (isWhereSupported) {
-                whr = "WHERE " + where + " ";
+                whr = " WHERE " + where;
             }
             switch (queryMode) {
                 case LOOKUP: {
@@ -231,33 +381,24 @@ public class NebulaGraphReader extends Reader {
             return s.trim();
         }
 
-        private Record buildRecord(RecordSender recordSender, ResultSet rs, String mandatoryEncoding) {
+        // 边依次返回src、dst、rank及column中的属性
+        private String queryEdgeByLookUpnGql(String edgeType, String whr) {
+            StringBuilder sb = new StringBuilder("LOOKUP ON ").append(edgeType).append(whr)
+                    .append(" YIELD src(edge) AS _src, dst(edge) AS _dst, rank(edge) AS _rank");
+            for (String column : columns) {
+                sb.append(",properties(edge).").append(column);
+            }
+            return sb.toString();
+        }
+
+        private Record buildRecord(RecordSender recordSender, ResultSet rs, int columnCount, ValueDecoder decoder) {
             Record record = recordSender.createRecord();
             try {
                 // rs: 查询语句返回一行数据 索引从1开始
-                ResultSetMetaData metaData = rs.getMetaData();
-                for (int i = 1; i <= metaData.getColumnCount(); i++) {
-                    ValueWrapper val = (ValueWrapper) rs.getObject(i);
-                    if (val.isBoolean()) {
-                        record.addColumn(new BoolColumn(val.asBoolean()));
-                    } else if (val.isDouble()) {
-                        record.addColumn(new DoubleColumn(val.asDouble()));
-                    } else if (val.isString()) {
-                        record.addColumn(new StringColumn(val.asString()));
-                    } else if (val.isLong()) {
-                        record.addColumn(new LongColumn(val.asLong()));
-                    } else if (val.isDate()) {
-                        DateWrapper dw = val.asDate();
-                        record.addColumn(new DateColumn(new Date(dw.getYear(),dw.getMonth(),dw.getDay())));
-                    } else if (val.isTime()) {
-                        // val.asTime();
-                    } else if (val.isDateTime()) {
-                        // val.asDateTime();
-                    } else if (val.isDuration()) {
-                        // val.asDuration();
-                    }
+                for (int i = 1; i <= columnCount; i++) {
+                    record.addColumn(decoder.decode((ValueWrapper) rs.getObject(i), i - 1));
                 }
-            } catch (SQLException | UnsupportedEncodingException | InvalidValueException e) {
+            } catch (SQLException e) {
                 throw DataXException.asDataXException(NebulaGraphReaderErrorCode.RUNTIME_EXCEPTION, e.getMessage(), e);
             }
             return record;
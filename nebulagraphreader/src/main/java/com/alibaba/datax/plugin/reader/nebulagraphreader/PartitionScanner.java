@@ -0,0 +1,197 @@
+package com.alibaba.datax.plugin.reader.nebulagraphreader;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.plugin.RecordSender;
+import com.vesoft.nebula.client.graph.data.HostAddress;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import com.vesoft.nebula.client.meta.MetaClient;
+import com.vesoft.nebula.client.storage.StorageClient;
+import com.vesoft.nebula.client.storage.data.EdgeTableRow;
+import com.vesoft.nebula.client.storage.data.VertexTableRow;
+import com.vesoft.nebula.client.storage.scan.ScanEdgeResult;
+import com.vesoft.nebula.client.storage.scan.ScanEdgeResultIterator;
+import com.vesoft.nebula.client.storage.scan.ScanVertexResult;
+import com.vesoft.nebula.client.storage.scan.ScanVertexResultIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * scan模式的读取
+ * 不经过graphd, 通过storage client按分片直接扫描storaged, 每次拉取batchSize行, 不需要索引;
+ * 分片由Job.split分配给各个Task, 一个Task依次扫描分配给它的分片;
+ * 边按起点所在的分片存储(出边), 每条边只会在一个分片中被扫描到
+ */
+public class PartitionScanner {
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionScanner.class);
+
+    private final StorageClient storageClient;
+    private final String space;
+    private final List<String> columns;
+    private final int batchSize;
+    private final Charset charset;
+
+    public PartitionScanner(List<HostAddress> metaAddress, String space, List<String> columns, int batchSize,
+                            Charset charset) {
+        this.storageClient = new StorageClient(metaAddress);
+        this.space = space;
+        this.columns = columns;
+        this.batchSize = batchSize;
+        this.charset = charset;
+        try {
+            storageClient.connect();
+        } catch (Exception e) {
+            throw DataXException.asDataXException(NebulaGraphReaderErrorCode.CONNECTION_FAILED,
+                    "Failed to connect storaged through metad " + metaAddress + ": " + e.getMessage(), e);
+        }
+    }
+
+    // 扫描一个标签在指定分片中的所有点 返回读取的行数
+    public long scanTag(String tag, int part, RecordSender recordSender) {
+        long rows = 0;
+        ValueDecoder decoder = new ValueDecoder(charset);
+        ScanVertexResultIterator iterator = storageClient.scanVertex(space, part, tag, columns, batchSize);
+        try {
+            while (iterator.hasNext()) {
+                ScanVertexResult result = iterator.next();
+                if (!result.isAllSuccess()) {
+                    throw DataXException.asDataXException(NebulaGraphReaderErrorCode.RUNTIME_EXCEPTION,
+                            "Failed to scan part " + part + " of tag " + tag);
+                }
+                for (VertexTableRow row : result.getVertexTableRows()) {
+                    recordSender.sendToWriter(buildRecord(recordSender, row.getValues(), decoder));
+                    rows++;
+                }
+            }
+        } catch (DataXException e) {
+            throw e;
+        } catch (Exception e) {
+            throw DataXException.asDataXException(NebulaGraphReaderErrorCode.RUNTIME_EXCEPTION,
+                    "Failed to scan part " + part + " of tag " + tag + ": " + e.getMessage(), e);
+        }
+        LOG.info("Scanned " + rows + " vertices of tag " + tag + " in part " + part + ".");
+        return rows;
+    }
+
+    // 扫描一个边类型在指定分片中的所有边 返回读取的行数
+    public long scanEdge(String edge, int part, RecordSender recordSender) {
+        long rows = 0;
+        ValueDecoder decoder = new ValueDecoder(charset);
+        ScanEdgeResultIterator iterator = storageClient.scanEdge(space, part, edge, columns, batchSize);
+        try {
+            while (iterator.hasNext()) {
+                ScanEdgeResult result = iterator.next();
+                if (!result.isAllSuccess()) {
+                    throw DataXException.asDataXException(NebulaGraphReaderErrorCode.RUNTIME_EXCEPTION,
+                            "Failed to scan part " + part + " of edge " + edge);
+                }
+                for (EdgeTableRow row : result.getEdgeTableRows()) {
+                    recordSender.sendToWriter(buildEdgeRecord(recordSender, row, decoder));
+                    rows++;
+                }
+            }
+        } catch (DataXException e) {
+            throw e;
+        } catch (Exception e) {
+            throw DataXException.asDataXException(NebulaGraphReaderErrorCode.RUNTIME_EXCEPTION,
+                    "Failed to scan part " + part + " of edge " + edge + ": " + e.getMessage(), e);
+        }
+        LOG.info("Scanned " + rows + " edges of " + edge + " in part " + part + ".");
+        return rows;
+    }
+
+    // 行首为_vid等系统列 属性按column的顺序排在末尾
+    private Record buildRecord(RecordSender recordSender, List<ValueWrapper> values, ValueDecoder decoder) {
+        Record record = recordSender.createRecord();
+        int first = values.size() - columns.size();
+        for (int i = first; i < values.size(); i++) {
+            record.addColumn(decoder.decode(values.get(i), i - first));
+        }
+        return record;
+    }
+
+    // 边的record依次为src、dst、rank及各属性
+    private Record buildEdgeRecord(RecordSender recordSender, EdgeTableRow row, ValueDecoder decoder) {
+        Record record = recordSender.createRecord();
+        record.addColumn(decoder.decode(row.getSrcId(), 0));
+        record.addColumn(decoder.decode(row.getDstId(), 1));
+        record.addColumn(new LongColumn(row.getRank()));
+        List<ValueWrapper> values = row.getValues();
+        int first = values.size() - columns.size();
+        for (int i = first; i < values.size(); i++) {
+            record.addColumn(decoder.decode(values.get(i), i - first + 3));
+        }
+        return record;
+    }
+
+    public void close() {
+        storageClient.close();
+    }
+
+    // 查询图空间的所有分片编号
+    public static List<Integer> loadPartitions(List<HostAddress> metaAddress, String space) {
+        MetaClient metaClient = null;
+        try {
+            metaClient = new MetaClient(metaAddress);
+            metaClient.connect();
+            Map<Integer, ?> partsAlloc = metaClient.getPartsAlloc(space);
+            return new ArrayList<>(new TreeSet<>(partsAlloc.keySet()));
+        } catch (Exception e) {
+            throw DataXException.asDataXException(NebulaGraphReaderErrorCode.CONNECTION_FAILED,
+                    "Failed to load partitions of space " + space + " from metad " + metaAddress + ": "
+                            + e.getMessage(), e);
+        } finally {
+            if (metaClient != null) {
+                metaClient.close();
+            }
+        }
+    }
+
+    // 将分片轮流分配为groups组 每组对应一个Task
+    public static List<List<Integer>> assign(List<Integer> partitions, int groups) {
+        int n = Math.max(1, Math.min(groups, partitions.size()));
+        List<List<Integer>> assigned = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            assigned.get(i % n).add(partitions.get(i));
+        }
+        return assigned;
+    }
+
+    // 解析地址列表 格式为host:port
+    public static List<HostAddress> parseAddresses(List<String> addresses) {
+        List<HostAddress> hostAddresses = new ArrayList<>();
+        for (String address : addresses) {
+            String[] hostAndPort = address.trim().split(":");
+            if (hostAndPort.length != 2) {
+                throw DataXException.asDataXException(NebulaGraphReaderErrorCode.ILLEGAL_VALUE,
+                        "Parameter [" + Key.META_ADDRESS + "] should be host:port, but got " + address);
+            }
+            hostAddresses.add(new HostAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+        }
+        return hostAddresses;
+    }
+
+    // 从jdbcUrl中截取图空间名称 jdbc:nebula://cba
+    public static String parseSpace(String jdbcUrl) {
+        String url = jdbcUrl.trim();
+        if (url.contains("?")) {
+            url = url.substring(0, url.indexOf('?'));
+        }
+        String space = url.substring(url.lastIndexOf('/') + 1);
+        if (space.isEmpty()) {
+            throw DataXException.asDataXException(NebulaGraphReaderErrorCode.ILLEGAL_VALUE,
+                    "Cannot find graph space in [" + Key.JDBC_URL + "]: " + jdbcUrl);
+        }
+        return space;
+    }
+}
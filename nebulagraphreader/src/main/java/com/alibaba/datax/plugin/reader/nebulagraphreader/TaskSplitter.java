@@ -0,0 +1,225 @@
+package com.alibaba.datax.plugin.reader.nebulagraphreader;
+
+import com.alibaba.datax.common.util.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Job的切分
+ * 每个jdbcUrl的每个标签、边类型或querySql语句为一个读取单元, 各单元平分adviceNumber个Task:
+ * scan模式下一个单元按分片切分为多个Task; lookup模式下配置了splitPk时, 按splitPk的最小值和最大值
+ * 将取值范围等分为多个切片, 每个切片在where后追加范围条件, 如 player.age >= 20 AND player.age < 40,
+ * 由graphd通过索引只扫描该范围; 未配置splitPk时一个单元对应一个Task. querySql语句无法切分, 一条语句对应一个Task.
+ * 配置了pageSize时, 按数据量估算每pageSize行对应的取值宽度, Task将切片再划分为该宽度的窗口依次查询,
+ * 读取端同一时刻只持有一个窗口的结果
+ */
+public class TaskSplitter {
+    private static final Logger LOG = LoggerFactory.getLogger(TaskSplitter.class);
+
+    // 图空间 -> 分片编号 scan模式下使用
+    private final Function<String, List<Integer>> partitionLoader;
+
+    // 读取单元 -> splitPk的取值范围 lookup模式下配置了splitPk时使用
+    private final RangeLoader rangeLoader;
+
+    // 查询一个读取单元中splitPk的{最小值, 最大值, 非NULL的行数} 没有数据时返回null
+    public interface RangeLoader {
+        long[] load(String jdbcUrl, String nGql);
+    }
+
+    public TaskSplitter(Function<String, List<Integer>> partitionLoader, RangeLoader rangeLoader) {
+        this.partitionLoader = partitionLoader;
+        this.rangeLoader = rangeLoader;
+    }
+
+    public List<Configuration> split(Configuration originalConfig, int adviceNumber) {
+        List<Configuration> units = new ArrayList<>();
+        for (Configuration conn : originalConfig.getListConfiguration(Key.CONNECTION)) {
+            List<String> querySql = NebulaGraphReader.getList(conn, Key.QUERY_SQL);
+            for (String jdbcUrl : conn.getList(Key.JDBC_URL, String.class)) {
+                Configuration base = originalConfig.clone();
+                base.set(Key.JDBC_URL, jdbcUrl);
+                base.remove(Key.CONNECTION);
+                // 优先使用querySql
+                if (!querySql.isEmpty()) {
+                    for (String sql : querySql) {
+                        units.add(unit(base, Collections.<String>emptyList(), Collections.<String>emptyList(),
+                                Collections.singletonList(sql)));
+                    }
+                    continue;
+                }
+                for (String table : NebulaGraphReader.getList(conn, Key.TABLE)) {
+                    units.add(unit(base, Collections.singletonList(table), Collections.<String>emptyList(),
+                            Collections.<String>emptyList()));
+                }
+                for (String edgeType : NebulaGraphReader.getList(conn, Key.EDGE_TYPE)) {
+                    units.add(unit(base, Collections.<String>emptyList(), Collections.singletonList(edgeType),
+                            Collections.<String>emptyList()));
+                }
+            }
+        }
+
+        // 每个单元可分得的Task个数
+        int slices = Math.max(1, adviceNumber / Math.max(1, units.size()));
+        boolean scan = NebulaGraphReader.isScanMode(originalConfig);
+        String splitPk = originalConfig.getString(Key.SPLIT_PK);
+        int pageSize = originalConfig.getInt(Key.PAGE_SIZE, 0);
+        Map<String, List<Integer>> partitionsOfSpace = new HashMap<>();
+        List<Configuration> readerSplitConfig = new ArrayList<>();
+        for (Configuration unit : units) {
+            if (!NebulaGraphReader.getList(unit, Key.QUERY_SQL).isEmpty()) {
+                readerSplitConfig.add(unit);
+            } else if (scan) {
+                String space = PartitionScanner.parseSpace(unit.getString(Key.JDBC_URL));
+                List<Integer> partitions = partitionsOfSpace.get(space);
+                if (partitions == null) {
+                    partitions = partitionLoader.apply(space);
+                    partitionsOfSpace.put(space, partitions);
+                }
+                for (List<Integer> assigned : PartitionScanner.assign(partitions, slices)) {
+                    Configuration partConfig = unit.clone();
+                    partConfig.set(Key.PARTITIONS, assigned);
+                    readerSplitConfig.add(partConfig);
+                }
+            } else if ((slices == 1 && pageSize <= 0) || splitPk == null || splitPk.trim().isEmpty()) {
+                readerSplitConfig.add(unit);
+            } else {
+                readerSplitConfig.addAll(splitByRange(unit, splitPk.trim(), slices, pageSize));
+            }
+        }
+        LOG.info(units.size() + " tables or statements are split into " + readerSplitConfig.size()
+                + " tasks, adviceNumber: " + adviceNumber + ".");
+        return readerSplitConfig;
+    }
+
+    // 按splitPk的取值范围切分 第一片不设下界 最后一片不设上界; 范围条件不匹配NULL 另加一片读取splitPk为NULL的数据
+    private List<Configuration> splitByRange(Configuration unit, String splitPk, int slices, int pageSize) {
+        List<String> tables = NebulaGraphReader.getList(unit, Key.TABLE);
+        boolean edge = tables.isEmpty();
+        String table = edge ? NebulaGraphReader.getList(unit, Key.EDGE_TYPE).get(0) : tables.get(0);
+        String where = unit.getString(Key.WHERE);
+        long[] range = rangeLoader.load(unit.getString(Key.JDBC_URL), rangeQuery(table, edge, where, splitPk));
+        if (range == null) {
+            return Collections.singletonList(unit);
+        }
+        List<Long> bounds = bounds(range[0], range[1], slices);
+        long windowWidth = pageSize > 0 ? windowWidth(range[0], range[1], range[2], pageSize) : 0;
+        String pk = table + "." + splitPk;
+        List<Configuration> sliceConfigs = new ArrayList<>();
+        for (int i = 0; i <= bounds.size() + 1; i++) {
+            List<String> conditions = new ArrayList<>();
+            if (where != null && !where.trim().isEmpty()) {
+                conditions.add("(" + where + ")");
+            }
+            if (i > bounds.size()) {
+                conditions.add(pk + " IS NULL");
+            } else {
+                if (i > 0) {
+                    conditions.add(pk + " >= " + bounds.get(i - 1));
+                }
+                if (i < bounds.size()) {
+                    conditions.add(pk + " < " + bounds.get(i));
+                }
+            }
+            Configuration sliceConfig = unit.clone();
+            sliceConfig.set(Key.WHERE, String.join(" AND ", conditions));
+            // NULL无法按取值划分窗口 该切片一次读取
+            if (windowWidth > 0 && i <= bounds.size()) {
+                sliceConfig.set(Key.SPLIT_START, i > 0 ? bounds.get(i - 1) : range[0]);
+                sliceConfig.set(Key.SPLIT_LAST, i < bounds.size() ? bounds.get(i) - 1 : range[1]);
+                sliceConfig.set(Key.WINDOW_WIDTH, windowWidth);
+            }
+            sliceConfigs.add(sliceConfig);
+        }
+        LOG.info("Split " + table + " by " + splitPk + " in [" + range[0] + ", " + range[1] + "] into "
+                + sliceConfigs.size() + " slices.");
+        return sliceConfigs;
+    }
+
+    // 查询splitPk的最小值和最大值 由graphd通过索引计算
+    static String rangeQuery(String table, boolean edge, String where, String splitPk) {
+        StringBuilder sb = new StringBuilder("LOOKUP ON ").append(table);
+        if (where != null && !where.trim().isEmpty()) {
+            sb.append(" WHERE ").append(where);
+        }
+        return sb.append(" YIELD properties(").append(edge ? "edge" : "vertex").append(").").append(splitPk)
+                .append(" AS _pk | YIELD min($-._pk) AS _min, max($-._pk) AS _max, count($-._pk) AS _count")
+                .toString();
+    }
+
+    // 假设取值均匀分布 平均每pageSize行对应的取值宽度 至少为1
+    static long windowWidth(long min, long max, long count, int pageSize) {
+        BigInteger span = BigInteger.valueOf(max).subtract(BigInteger.valueOf(min)).add(BigInteger.ONE);
+        BigInteger width = span.multiply(BigInteger.valueOf(pageSize)).divide(BigInteger.valueOf(Math.max(1, count)));
+        return width.max(BigInteger.ONE).min(BigInteger.valueOf(Long.MAX_VALUE)).longValue();
+    }
+
+    // 将[start, last]划分为宽度为width的窗口 依次返回各窗口追加到where后的条件;
+    // 切片的where已限定其上下界 第一个窗口不设下界 最后一个窗口不设上界 只有一个窗口时返回空字符串
+    static Iterator<String> windows(String pk, long start, long last, long width) {
+        return new Iterator<String>() {
+            private long next = start;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                return !done;
+            }
+
+            @Override
+            public String next() {
+                if (done) {
+                    throw new NoSuchElementException();
+                }
+                long from = next;
+                // 加法溢出时同样为最后一个窗口
+                long to = from + width;
+                done = to <= from || to > last;
+                next = to;
+                List<String> conditions = new ArrayList<>(2);
+                if (from != start) {
+                    conditions.add(pk + " >= " + from);
+                }
+                if (!done) {
+                    conditions.add(pk + " < " + to);
+                }
+                return String.join(" AND ", conditions);
+            }
+        };
+    }
+
+    // [min, max]等分为slices段的分界点 (min, max]内升序且不重复 使用BigInteger避免差值溢出
+    static List<Long> bounds(long min, long max, int slices) {
+        BigInteger lo = BigInteger.valueOf(min);
+        BigInteger span = BigInteger.valueOf(max).subtract(lo).add(BigInteger.ONE);
+        BigInteger count = BigInteger.valueOf(slices);
+        TreeSet<Long> bounds = new TreeSet<>();
+        for (int i = 1; i < slices; i++) {
+            long bound = lo.add(span.multiply(BigInteger.valueOf(i)).divide(count)).longValue();
+            if (bound > min) {
+                bounds.add(bound);
+            }
+        }
+        return new ArrayList<>(bounds);
+    }
+
+    private static Configuration unit(Configuration base, List<String> tables, List<String> edgeTypes,
+                                      List<String> querySql) {
+        Configuration unit = base.clone();
+        unit.set(Key.TABLE, tables);
+        unit.set(Key.EDGE_TYPE, edgeTypes);
+        unit.set(Key.QUERY_SQL, querySql);
+        return unit;
+    }
+}
@@ -0,0 +1,207 @@
+package com.alibaba.datax.plugin.reader.nebulagraphreader;
+
+import com.alibaba.datax.common.element.BoolColumn;
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.DateColumn;
+import com.alibaba.datax.common.element.DoubleColumn;
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.StringColumn;
+import com.vesoft.nebula.Date;
+import com.vesoft.nebula.DateTime;
+import com.vesoft.nebula.Time;
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.client.graph.data.DurationWrapper;
+import com.vesoft.nebula.client.graph.data.GeographyWrapper;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * 一个查询的值解码计划
+ * 每一列按第一个非空值的类型(Value的setField)选定转换器, 之后各行按列下标直接转换, 类型变化时重新选定;
+ * 覆盖NebulaGraph的所有值类型: time/datetime按UTC转换为DateColumn, date按本地时区的零点,
+ * duration、geography及点、边、路径、列表等复合类型转换为字符串; 空值转换为对应类型的空列
+ */
+public class ValueDecoder {
+
+    enum Converter {
+        NULL {
+            @Override
+            Column convert(Value value, Charset charset) {
+                return new StringColumn();
+            }
+        },
+        BOOL {
+            @Override
+            Column convert(Value value, Charset charset) {
+                return new BoolColumn(value.isBVal());
+            }
+
+            @Override
+            Column nullColumn() {
+                return new BoolColumn();
+            }
+        },
+        INT {
+            @Override
+            Column convert(Value value, Charset charset) {
+                return new LongColumn(value.getIVal());
+            }
+
+            @Override
+            Column nullColumn() {
+                return new LongColumn();
+            }
+        },
+        FLOAT {
+            @Override
+            Column convert(Value value, Charset charset) {
+                return new DoubleColumn(value.getFVal());
+            }
+
+            @Override
+            Column nullColumn() {
+                return new DoubleColumn();
+            }
+        },
+        STRING {
+            @Override
+            Column convert(Value value, Charset charset) {
+                return new StringColumn(new String(value.getSVal(), charset));
+            }
+        },
+        DATE {
+            @Override
+            Column convert(Value value, Charset charset) {
+                Date date = value.getDVal();
+                long millis = LocalDate.of(date.getYear(), date.getMonth(), date.getDay())
+                        .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                return new DateColumn(new java.sql.Date(millis));
+            }
+
+            @Override
+            Column nullColumn() {
+                return new DateColumn();
+            }
+        },
+        TIME {
+            @Override
+            Column convert(Value value, Charset charset) {
+                Time time = value.getTVal();
+                LocalTime local = LocalTime.of(time.getHour(), time.getMinute(), time.getSec(),
+                        time.getMicrosec() * 1000);
+                long millis = local.atDate(LocalDate.ofEpochDay(0)).toInstant(ZoneOffset.UTC).toEpochMilli();
+                return new DateColumn(new java.sql.Time(millis));
+            }
+
+            @Override
+            Column nullColumn() {
+                return new DateColumn();
+            }
+        },
+        DATETIME {
+            @Override
+            Column convert(Value value, Charset charset) {
+                DateTime dt = value.getDtVal();
+                LocalDateTime local = LocalDateTime.of(dt.getYear(), dt.getMonth(), dt.getDay(), dt.getHour(),
+                        dt.getMinute(), dt.getSec(), dt.getMicrosec() * 1000);
+                return new DateColumn(Timestamp.from(local.toInstant(ZoneOffset.UTC)));
+            }
+
+            @Override
+            Column nullColumn() {
+                return new DateColumn();
+            }
+        },
+        DURATION {
+            @Override
+            Column convert(Value value, Charset charset) {
+                return new StringColumn(new DurationWrapper(value.getDuVal()).getDurationString());
+            }
+        },
+        GEOGRAPHY {
+            @Override
+            Column convert(Value value, Charset charset) {
+                return new StringColumn(new GeographyWrapper(value.getGgVal()).toString());
+            }
+        },
+        // 点、边、路径、列表、集合、映射等
+        COMPOSITE {
+            @Override
+            Column convert(Value value, Charset charset) {
+                return new StringColumn(new ValueWrapper(value, charset.name()).toString());
+            }
+        };
+
+        abstract Column convert(Value value, Charset charset);
+
+        Column nullColumn() {
+            return new StringColumn();
+        }
+    }
+
+    private final Charset charset;
+    // 每列选定的转换器及其对应的Value类型
+    private Converter[] converters = new Converter[0];
+    private int[] fields = new int[0];
+
+    public ValueDecoder(Charset charset) {
+        this.charset = charset;
+    }
+
+    public Column decode(ValueWrapper wrapper, int column) {
+        return decode(wrapper.getValue(), column);
+    }
+
+    public Column decode(Value value, int column) {
+        if (column >= converters.length) {
+            int length = Math.max(column + 1, converters.length * 2);
+            int from = converters.length;
+            converters = Arrays.copyOf(converters, length);
+            fields = Arrays.copyOf(fields, length);
+            Arrays.fill(converters, from, length, Converter.NULL);
+            Arrays.fill(fields, from, length, -1);
+        }
+        int field = value == null ? Value.NVAL : value.getSetField();
+        if (field == Value.NVAL || field == 0) {
+            return converters[column].nullColumn();
+        }
+        if (field != fields[column]) {
+            converters[column] = converterOf(field);
+            fields[column] = field;
+        }
+        return converters[column].convert(value, charset);
+    }
+
+    static Converter converterOf(int field) {
+        switch (field) {
+            case Value.BVAL:
+                return Converter.BOOL;
+            case Value.IVAL:
+                return Converter.INT;
+            case Value.FVAL:
+                return Converter.FLOAT;
+            case Value.SVAL:
+                return Converter.STRING;
+            case Value.DVAL:
+                return Converter.DATE;
+            case Value.TVAL:
+                return Converter.TIME;
+            case Value.DTVAL:
+                return Converter.DATETIME;
+            case Value.DUVAL:
+                return Converter.DURATION;
+            case Value.GGVAL:
+                return Converter.GEOGRAPHY;
+            default:
+                return Converter.COMPOSITE;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.alibaba.datax.plugin.reader.nebulagraphreader;
+
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.util.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PartitionScannerTest {
+
+    @Test
+    public void assignPartitions() {
+        // when
+        List<List<Integer>> assigned = PartitionScanner.assign(Arrays.asList(1, 2, 3, 4, 5), 2);
+
+        // then & assert
+        Assert.assertEquals(Arrays.asList(Arrays.asList(1, 3, 5), Arrays.asList(2, 4)), assigned);
+    }
+
+    @Test
+    public void assignMoreGroupsThanPartitions() {
+        // when
+        List<List<Integer>> assigned = PartitionScanner.assign(Arrays.asList(1, 2), 16);
+
+        // then & assert
+        Assert.assertEquals(2, assigned.size());
+        Assert.assertEquals(Arrays.asList(1), assigned.get(0));
+    }
+
+    @Test
+    public void parseSpace() {
+        Assert.assertEquals("cba", PartitionScanner.parseSpace("jdbc:nebula://cba"));
+        Assert.assertEquals("cba", PartitionScanner.parseSpace("jdbc:nebula://cba?timeout=3000"));
+    }
+
+    @Test(expected = DataXException.class)
+    public void parseIllegalAddress() {
+        PartitionScanner.parseAddresses(Arrays.asList("127.0.0.1"));
+    }
+
+    @Test
+    public void rejectFiltersInScanMode() {
+        String scan = "{\"username\":\"root\",\"password\":\"nebula\",\"readMode\":\"scan\","
+                + "\"metaAddress\":[\"127.0.0.1:9559\"],\"column\":[\"name\"],";
+        // where和querySql在scan模式下均无法生效 直接拒绝而不是静默读取全部数据
+        assertRejected(scan + "\"where\":\"player.age > 30\",\"connection\":[{\"table\":[\"player\"],"
+                + "\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}", Key.WHERE);
+        assertRejected(scan + "\"connection\":[{\"table\":[\"player\"],\"querySql\":[\"MATCH (v) RETURN v\"],"
+                + "\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}", Key.QUERY_SQL);
+    }
+
+    private static void assertRejected(String json, String key) {
+        NebulaGraphReader.Job job = new NebulaGraphReader.Job();
+        job.setPluginJobConf(Configuration.from(json));
+        try {
+            job.init();
+            Assert.fail(key + " should be rejected in scan mode");
+        } catch (DataXException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("[" + key + "]"));
+        }
+    }
+}
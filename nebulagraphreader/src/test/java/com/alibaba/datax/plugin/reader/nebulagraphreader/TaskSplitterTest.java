@@ -0,0 +1,186 @@
+package com.alibaba.datax.plugin.reader.nebulagraphreader;
+
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.util.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TaskSplitterTest {
+
+    @Test
+    public void oneTaskPerTableWithoutSplitPk() {
+        // given
+        Configuration conf = Configuration.from("{\"username\":\"root\",\"password\":\"nebula\"," +
+                "\"column\":[\"name\"],\"connection\":[{\"table\":[\"player\",\"team\"]," +
+                "\"edgeType\":[\"follow\"],\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}");
+        TaskSplitter splitter = new TaskSplitter(space -> {
+            throw new AssertionError("partitions are only loaded in scan mode");
+        }, (jdbcUrl, nGql) -> {
+            throw new AssertionError("ranges are only loaded with splitPk");
+        });
+
+        // when
+        List<Configuration> tasks = splitter.split(conf, 7);
+
+        // then & assert
+        Assert.assertEquals(3, tasks.size());
+        Assert.assertEquals(Collections.singletonList("team"), tasks.get(1).getList(Key.TABLE, String.class));
+        Assert.assertTrue(tasks.get(2).getList(Key.TABLE, String.class).isEmpty());
+        Assert.assertEquals(Collections.singletonList("follow"), tasks.get(2).getList(Key.EDGE_TYPE, String.class));
+        Assert.assertEquals("jdbc:nebula://cba", tasks.get(2).getString(Key.JDBC_URL));
+        Assert.assertNull(tasks.get(2).get(Key.CONNECTION));
+    }
+
+    @Test
+    public void splitByRangeOfSplitPk() {
+        // given
+        Configuration conf = Configuration.from("{\"username\":\"root\",\"password\":\"nebula\"," +
+                "\"column\":[\"name\"],\"splitPk\":\"age\",\"where\":\"player.name != \\\"a\\\"\"," +
+                "\"connection\":[{\"table\":[\"player\"],\"edgeType\":[\"follow\"]," +
+                "\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}");
+        List<String> queries = new ArrayList<>();
+        TaskSplitter splitter = new TaskSplitter(null, (jdbcUrl, nGql) -> {
+            queries.add(nGql);
+            // follow上没有数据
+            return nGql.startsWith("LOOKUP ON player") ? new long[]{20, 40, 1000} : null;
+        });
+
+        // when
+        List<Configuration> tasks = splitter.split(conf, 8);
+
+        // then & assert
+        Assert.assertEquals("LOOKUP ON player WHERE player.name != \"a\" YIELD properties(vertex).age AS _pk | "
+                + "YIELD min($-._pk) AS _min, max($-._pk) AS _max, count($-._pk) AS _count", queries.get(0));
+        Assert.assertTrue(queries.get(1).contains("YIELD properties(edge).age AS _pk"));
+        Assert.assertEquals(6, tasks.size());
+        Assert.assertEquals("(player.name != \"a\") AND player.age < 25", tasks.get(0).getString(Key.WHERE));
+        Assert.assertEquals("(player.name != \"a\") AND player.age >= 25 AND player.age < 30",
+                tasks.get(1).getString(Key.WHERE));
+        Assert.assertEquals("(player.name != \"a\") AND player.age >= 35", tasks.get(3).getString(Key.WHERE));
+        Assert.assertEquals("player.name != \"a\"", tasks.get(5).getString(Key.WHERE));
+    }
+
+    @Test
+    public void coverNullSplitPk() {
+        // given
+        Configuration conf = Configuration.from("{\"column\":[\"name\"],\"splitPk\":\"age\"," +
+                "\"where\":\"player.name != \\\"a\\\"\",\"connection\":[{\"table\":[\"player\"]," +
+                "\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}");
+        TaskSplitter splitter = new TaskSplitter(null, (jdbcUrl, nGql) -> new long[]{0, 99, 100});
+
+        // when
+        List<Configuration> tasks = splitter.split(conf, 2);
+
+        // then & assert
+        // 范围条件不匹配age为NULL的点 由单独的切片读取
+        Assert.assertEquals(3, tasks.size());
+        Assert.assertEquals("(player.name != \"a\") AND player.age < 50", tasks.get(0).getString(Key.WHERE));
+        Assert.assertEquals("(player.name != \"a\") AND player.age >= 50", tasks.get(1).getString(Key.WHERE));
+        Assert.assertEquals("(player.name != \"a\") AND player.age IS NULL", tasks.get(2).getString(Key.WHERE));
+    }
+
+    @Test
+    public void windowsOfPageSize() {
+        // given
+        // 1000行分布在[0, 99]内 每100行约对应10个取值
+        Configuration conf = Configuration.from("{\"column\":[\"name\"],\"splitPk\":\"age\",\"pageSize\":100," +
+                "\"connection\":[{\"table\":[\"player\"],\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}");
+        TaskSplitter splitter = new TaskSplitter(null, (jdbcUrl, nGql) -> new long[]{0, 99, 1000});
+
+        // when
+        List<Configuration> tasks = splitter.split(conf, 1);
+
+        // then & assert
+        // 只有一个Task时同样按窗口读取 另有NULL的切片
+        Assert.assertEquals(2, tasks.size());
+        Assert.assertEquals(0L, (long) tasks.get(0).getLong(Key.SPLIT_START));
+        Assert.assertEquals(99L, (long) tasks.get(0).getLong(Key.SPLIT_LAST));
+        Assert.assertEquals(10L, (long) tasks.get(0).getLong(Key.WINDOW_WIDTH));
+        Assert.assertNull(tasks.get(1).getLong(Key.WINDOW_WIDTH));
+        Assert.assertEquals("player.age IS NULL", tasks.get(1).getString(Key.WHERE));
+    }
+
+    @Test
+    public void windowConditions() {
+        // when
+        List<String> windows = new ArrayList<>();
+        TaskSplitter.windows("player.age", 25, 34, 4).forEachRemaining(windows::add);
+
+        // then & assert
+        // 切片的where已限定[25, 35) 第一个窗口不设下界 最后一个窗口不设上界
+        Assert.assertEquals(Arrays.asList("player.age < 29", "player.age >= 29 AND player.age < 33",
+                "player.age >= 33"), windows);
+        Assert.assertEquals("", TaskSplitter.windows("player.age", 7, 7, 10).next());
+        // 加法溢出
+        List<String> last = new ArrayList<>();
+        TaskSplitter.windows("player.age", Long.MAX_VALUE - 1, Long.MAX_VALUE, 1).forEachRemaining(last::add);
+        Assert.assertEquals(Arrays.asList("player.age < " + Long.MAX_VALUE, "player.age >= " + Long.MAX_VALUE), last);
+        Assert.assertEquals(1L, TaskSplitter.windowWidth(0, 9, 1000, 10));
+        Assert.assertEquals(Long.MAX_VALUE, TaskSplitter.windowWidth(Long.MIN_VALUE, Long.MAX_VALUE, 1, 10));
+    }
+
+    @Test
+    public void requireSplitPkForPageSize() {
+        // given
+        NebulaGraphReader.Job job = new NebulaGraphReader.Job();
+        job.setPluginJobConf(Configuration.from("{\"username\":\"root\",\"password\":\"nebula\"," +
+                "\"column\":[\"name\"],\"pageSize\":1000,\"connection\":[{\"table\":[\"player\"]," +
+                "\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}"));
+
+        // when
+        try {
+            job.init();
+            Assert.fail("pageSize without splitPk should be rejected");
+        } catch (DataXException e) {
+            // then & assert
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("[" + Key.SPLIT_PK + "]"));
+        }
+    }
+
+    @Test
+    public void rangeBounds() {
+        Assert.assertEquals(Arrays.asList(4L, 7L), TaskSplitter.bounds(1, 9, 3));
+        // 取值个数少于切片数时不产生空切片
+        Assert.assertEquals(Collections.singletonList(6L), TaskSplitter.bounds(5, 6, 4));
+        Assert.assertTrue(TaskSplitter.bounds(7, 7, 4).isEmpty());
+        // 差值超出long的范围
+        Assert.assertEquals(Collections.singletonList(0L), TaskSplitter.bounds(Long.MIN_VALUE, Long.MAX_VALUE, 2));
+    }
+
+    @Test
+    public void splitPartitionsInScanMode() {
+        // given
+        Configuration conf = Configuration.from("{\"readMode\":\"scan\",\"metaAddress\":[\"127.0.0.1:9559\"]," +
+                "\"column\":[\"name\"],\"connection\":[{\"table\":[\"player\",\"team\"]," +
+                "\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}");
+        TaskSplitter splitter = new TaskSplitter(space -> Arrays.asList(1, 2, 3, 4, 5, 6), null);
+
+        // when
+        List<Configuration> tasks = splitter.split(conf, 8);
+
+        // then & assert
+        Assert.assertEquals(8, tasks.size());
+        Assert.assertEquals(Arrays.asList(1, 5), tasks.get(0).getList(Key.PARTITIONS, Integer.class));
+        Assert.assertEquals(Collections.singletonList("team"), tasks.get(7).getList(Key.TABLE, String.class));
+    }
+
+    @Test
+    public void oneTaskPerQuerySql() {
+        // given
+        Configuration conf = Configuration.from("{\"connection\":[{\"querySql\":[\"a\",\"b\"]," +
+                "\"jdbcUrl\":[\"jdbc:nebula://cba\"]}]}");
+
+        // when
+        List<Configuration> tasks = new TaskSplitter(null, null).split(conf, 16);
+
+        // then & assert
+        Assert.assertEquals(2, tasks.size());
+        Assert.assertEquals(Collections.singletonList("b"), tasks.get(1).getList(Key.QUERY_SQL, String.class));
+        Assert.assertNull(tasks.get(1).getString(Key.WHERE));
+    }
+}
@@ -0,0 +1,74 @@
+package com.alibaba.datax.plugin.reader.nebulagraphreader;
+
+import com.alibaba.datax.common.element.Column;
+import com.vesoft.nebula.Date;
+import com.vesoft.nebula.DateTime;
+import com.vesoft.nebula.Duration;
+import com.vesoft.nebula.NullType;
+import com.vesoft.nebula.Time;
+import com.vesoft.nebula.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+public class ValueDecoderTest {
+
+    @Test
+    public void decodeAllTypes() {
+        // given
+        ValueDecoder decoder = new ValueDecoder(StandardCharsets.UTF_8);
+
+        // when
+        Column date = decoder.decode(Value.dVal(new Date((short) 2022, (byte) 3, (byte) 15)), 0);
+        Column time = decoder.decode(Value.tVal(new Time((byte) 1, (byte) 2, (byte) 3, 4000)), 1);
+        Column dateTime = decoder.decode(Value.dtVal(new DateTime((short) 1970, (byte) 1, (byte) 2,
+                (byte) 0, (byte) 0, (byte) 1, 500000)), 2);
+        Column string = decoder.decode(Value.sVal("名字".getBytes(StandardCharsets.UTF_8)), 3);
+        Column duration = decoder.decode(Value.duVal(new Duration(60L, 0, 1)), 4);
+
+        // then & assert
+        long midnight = LocalDate.of(2022, 3, 15).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Assert.assertEquals(Column.Type.DATE, date.getType());
+        Assert.assertEquals(midnight, date.asLong().longValue());
+        Assert.assertEquals(Column.Type.DATE, time.getType());
+        Assert.assertEquals(3723004L, time.asLong().longValue());
+        Assert.assertEquals(86401500L, dateTime.asLong().longValue());
+        Assert.assertEquals("名字", string.asString());
+        Assert.assertEquals(Column.Type.STRING, duration.getType());
+    }
+
+    @Test
+    public void nullKeepsColumnPosition() {
+        // given
+        ValueDecoder decoder = new ValueDecoder(StandardCharsets.UTF_8);
+        decoder.decode(Value.iVal(1L), 0);
+
+        // when
+        Column typedNull = decoder.decode(Value.nVal(NullType.__NULL__), 0);
+        Column unknownNull = decoder.decode(Value.nVal(NullType.__NULL__), 1);
+
+        // then & assert
+        // 空值也占一列 后面的列不会前移
+        Assert.assertEquals(Column.Type.LONG, typedNull.getType());
+        Assert.assertNull(typedNull.getRawData());
+        Assert.assertNull(unknownNull.getRawData());
+    }
+
+    @Test
+    public void reselectConverterWhenTypeChanges() {
+        // given
+        ValueDecoder decoder = new ValueDecoder(StandardCharsets.UTF_8);
+        Assert.assertEquals(Column.Type.LONG, decoder.decode(Value.iVal(1L), 0).getType());
+
+        // when
+        Column column = decoder.decode(Value.fVal(1.5), 0);
+
+        // then & assert
+        Assert.assertEquals(Column.Type.DOUBLE, column.getType());
+        Assert.assertEquals(1.5, column.asDouble(), 0);
+        Assert.assertEquals(ValueDecoder.Converter.BOOL, ValueDecoder.converterOf(Value.BVAL));
+    }
+}
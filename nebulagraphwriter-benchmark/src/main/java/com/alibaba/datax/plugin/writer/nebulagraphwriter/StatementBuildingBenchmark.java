@@ -0,0 +1,165 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.BoolColumn;
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.DateColumn;
+import com.alibaba.datax.common.element.DoubleColumn;
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * writer端nGQL语句构建的基准测试
+ * 使用合成的Record(宽度和类型组合可配置)通过DefaultDataHandler.writeBatch构建insert语句,
+ * 语句交给不连接graphd的NoopSession, 因此只测量语句构建本身; 结果按行归一化.
+ *
+ * mvn -pl nebulagraphwriter-benchmark -am package
+ * java -jar nebulagraphwriter-benchmark/target/benchmarks.jar StatementBuildingBenchmark -prof gc
+ *
+ * ops/s即每秒构建的行数, -prof gc输出的gc.alloc.rate.norm即每行分配的字节数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementBuildingBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final String[] MIXED_TYPES = {"string", "int64", "double", "bool", "datetime"};
+
+    // 每行的属性个数
+    @Param({"4", "16", "64"})
+    public int width;
+
+    // string: 全部为字符串属性 mixed: 字符串、整数、浮点、布尔、时间交替
+    @Param({"string", "mixed"})
+    public String typeMix;
+
+    // 字符串属性中包含需要转义的字符
+    @Param({"false", "true"})
+    public boolean escape;
+
+    private DefaultDataHandler tagHandler;
+    private DefaultDataHandler edgeHandler;
+    private List<Record> tagRecords;
+    private List<Record> edgeRecords;
+    private NoopSession session;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        session = new NoopSession();
+        List<String> properties = new ArrayList<>();
+        List<ColumnMeta> colMetas = new ArrayList<>();
+        for (int i = 0; i < width; i++) {
+            properties.add("p" + i);
+            colMetas.add(WriterFixtures.columnMeta("p" + i, typeOf(i)));
+        }
+
+        List<String> edgeColumns = new ArrayList<>();
+        edgeColumns.add("src");
+        edgeColumns.add("dst");
+        edgeColumns.addAll(properties);
+
+        tagHandler = handler("profile", TableType.TAG, properties, colMetas);
+        edgeHandler = handler("follow", TableType.EDGE_TYPE, edgeColumns, colMetas);
+
+        Random random = new Random(42);
+        tagRecords = new ArrayList<>(ROWS);
+        edgeRecords = new ArrayList<>(ROWS);
+        for (int row = 0; row < ROWS; row++) {
+            Record tag = new DefaultRecord();
+            Record edge = new DefaultRecord();
+            edge.addColumn(new StringColumn("member_" + row));
+            edge.addColumn(new StringColumn("member_" + random.nextInt(ROWS)));
+            for (int i = 0; i < width; i++) {
+                Column column = columnOf(typeOf(i), row, random);
+                tag.addColumn(column);
+                edge.addColumn(column);
+            }
+            tagRecords.add(tag);
+            edgeRecords.add(edge);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int tag() throws Exception {
+        return tagHandler.writeBatch(session, tagRecords);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int edge() throws Exception {
+        return edgeHandler.writeBatch(session, edgeRecords);
+    }
+
+    private DefaultDataHandler handler(String table, TableType tableType, List<String> columns,
+                                       List<ColumnMeta> colMetas) {
+        Configuration conf = Configuration.newDefault();
+        conf.set(Key.USERNAME, "root");
+        conf.set(Key.PASSWORD, "nebula");
+        conf.set(Key.JDBC_URL, "jdbc:nebula://benchmark");
+        conf.set(Key.TABLE, Collections.singletonList(table));
+        conf.set(Key.COLUMN, columns);
+        conf.set(Key.BATCH_SIZE, ROWS);
+        conf.set(Key.EDGE_TYPE, Collections.singletonList(Configuration.from("{\"srcTag\":\"profile\","
+                + "\"srcPrimaryKey\":\"src\",\"dstTag\":\"profile\",\"dstPrimaryKey\":\"dst\"}").getInternal()));
+        DefaultDataHandler handler = new DefaultDataHandler(conf, null);
+
+        TableMeta tableMeta = new TableMeta();
+        tableMeta.name = table;
+        tableMeta.tableType = tableType;
+        Map<String, TableMeta> tableMetas = new HashMap<>();
+        tableMetas.put(table, tableMeta);
+        Map<String, List<ColumnMeta>> columnMetas = new HashMap<>();
+        columnMetas.put(table, colMetas);
+        handler.setTableMetas(tableMetas);
+        handler.setColumnMetas(columnMetas);
+        return handler;
+    }
+
+    private String typeOf(int i) {
+        return "mixed".equals(typeMix) ? MIXED_TYPES[i % MIXED_TYPES.length] : "string";
+    }
+
+    private Column columnOf(String type, int row, Random random) {
+        switch (type) {
+            case "int64":
+                return new LongColumn(random.nextLong());
+            case "double":
+                return new DoubleColumn(random.nextDouble());
+            case "bool":
+                return new BoolColumn(random.nextBoolean());
+            case "datetime":
+                return new DateColumn(System.currentTimeMillis() - random.nextInt(Integer.MAX_VALUE));
+            default:
+                String value = "value_" + row + "_" + random.nextInt(100000);
+                return new StringColumn(escape ? value + " \"quoted\\" : value);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+/**
+ * 自适应批次大小控制(AIMD)
+ * 批次写入耗时低于目标耗时则批次行数加性增长, 超过目标耗时或写入失败则减半;
+ * 关闭自适应时始终返回固定的batchSize
+ */
+public class AdaptiveBatchController {
+
+    private final boolean adaptive;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int step;
+    private final long targetLatencyNanos;
+
+    private volatile int batchSize;
+
+    public AdaptiveBatchController(int batchSize, boolean adaptive, int maxBatchSize, long targetLatencyMs) {
+        this.adaptive = adaptive;
+        this.batchSize = Math.max(1, batchSize);
+        this.minBatchSize = 1;
+        this.maxBatchSize = Math.max(this.batchSize, maxBatchSize);
+        // 每次增长初始批次的十分之一
+        this.step = Math.max(1, this.batchSize / 10);
+        this.targetLatencyNanos = targetLatencyMs * 1_000_000L;
+    }
+
+    // 当前一个批次的行数上限
+    public int batchSize() {
+        return batchSize;
+    }
+
+    // 多个写入线程并发上报
+    public synchronized void onSuccess(int rows, long latencyNanos) {
+        if (!adaptive) {
+            return;
+        }
+        if (latencyNanos > targetLatencyNanos) {
+            decrease();
+        } else if (rows >= batchSize) {
+            // 只有满批次的耗时才能说明批次还可以更大
+            batchSize = Math.min(maxBatchSize, batchSize + step);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (adaptive) {
+            decrease();
+        }
+    }
+
+    private void decrease() {
+        batchSize = Math.max(minBatchSize, batchSize / 2);
+    }
+}
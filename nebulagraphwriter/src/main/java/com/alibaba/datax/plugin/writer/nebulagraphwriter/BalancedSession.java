@@ -0,0 +1,168 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.exception.DataXException;
+import com.vesoft.nebula.client.graph.data.HostAddress;
+import com.vesoft.nebula.client.graph.data.ResultSet;
+import com.vesoft.nebula.client.graph.exception.IOErrorException;
+import com.vesoft.nebula.client.graph.net.AuthResult;
+import com.vesoft.nebula.client.graph.net.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * NebulaSessionPool借出的会话
+ * 语句实际在当前graphd的会话上执行, 执行耗时与连接异常、可重试错误反馈给GraphHostBalancer;
+ * 连接异常后丢弃当前会话, 当前graphd被摘除或明显慢于其他graphd时, 在下一条语句执行前迁移到其他graphd;
+ * 父类只作为类型使用, 不持有连接, Session的公开方法全部重写为委托给当前会话
+ */
+public class BalancedSession extends Session {
+    private static final Logger LOG = LoggerFactory.getLogger(BalancedSession.class);
+
+    // 每执行该数量的语句检查一次是否需要迁移
+    private static final int RELOCATE_INTERVAL = 16;
+
+    private final NebulaSessionPool pool;
+    private final GraphHostBalancer balancer;
+    private Session session;
+    private HostAddress host;
+    private long executions;
+    // release之后不再打开新的会话
+    private boolean released;
+
+    BalancedSession(NebulaSessionPool pool, Session session) {
+        super(null, new AuthResult(0L, 0), null, false);
+        this.pool = pool;
+        this.balancer = pool.getBalancer();
+        this.session = session;
+        this.host = session.getGraphHost();
+    }
+
+    @Override
+    public synchronized ResultSet execute(String stmt) throws IOErrorException {
+        return execute(stmt, null);
+    }
+
+    @Override
+    public synchronized ResultSet executeWithParameter(String stmt, Map<String, Object> parameterMap)
+            throws IOErrorException {
+        return execute(stmt, parameterMap);
+    }
+
+    private ResultSet execute(String stmt, Map<String, Object> parameterMap) throws IOErrorException {
+        Session current = current();
+        long start = System.nanoTime();
+        ResultSet rs;
+        try {
+            rs = parameterMap == null ? current.execute(stmt) : current.executeWithParameter(stmt, parameterMap);
+        } catch (IOErrorException e) {
+            // 连接异常后会话不再可用 下一条语句重新选择graphd
+            balancer.onFailure(host);
+            discard();
+            throw e;
+        }
+        if (!rs.isSucceeded() && ErrorClassifier.isRetryable(rs.getErrorCode(), rs.getErrorMessage())) {
+            balancer.onFailure(host);
+        } else {
+            balancer.onSuccess(host, System.nanoTime() - start);
+        }
+        return rs;
+    }
+
+    @Override
+    public synchronized String executeJson(String stmt) throws IOErrorException {
+        return executeJson(stmt, null);
+    }
+
+    @Override
+    public synchronized String executeJsonWithParameter(String stmt, Map<String, Object> parameterMap)
+            throws IOErrorException {
+        return executeJson(stmt, parameterMap);
+    }
+
+    // json结果不解析错误码 只反馈连接异常
+    private String executeJson(String stmt, Map<String, Object> parameterMap) throws IOErrorException {
+        Session current = current();
+        try {
+            return parameterMap == null ? current.executeJson(stmt)
+                    : current.executeJsonWithParameter(stmt, parameterMap);
+        } catch (IOErrorException e) {
+            balancer.onFailure(host);
+            discard();
+            throw e;
+        }
+    }
+
+    // 当前可用的会话 必要时迁移到其他graphd
+    private Session current() {
+        try {
+            if (released) {
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                        "Session has been released");
+            }
+            if (session == null) {
+                session = pool.openSession();
+                host = session.getGraphHost();
+            } else if (balancer.isEjected(host) || ++executions % RELOCATE_INTERVAL == 0) {
+                HostAddress target = balancer.relocate(host);
+                if (target != null) {
+                    Session moved = pool.openSession(target);
+                    LOG.info("Move session from graphd " + host + " to " + target + ".");
+                    balancer.retain(target);
+                    balancer.release(host);
+                    pool.park(session);
+                    session = moved;
+                    host = target;
+                }
+            }
+            return session;
+        } catch (DataXException e) {
+            throw e;
+        } catch (Exception e) {
+            // 目标graphd不可用时可重试 由RetryExecutor退避后再次执行
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RETRYABLE_EXCEPTION,
+                    "Failed to get session: " + e.getMessage(), e);
+        }
+    }
+
+    // 释放当前会话 不再计入所在graphd的会话数
+    private void discard() {
+        if (session != null) {
+            session.release();
+            balancer.release(host);
+            session = null;
+        }
+    }
+
+    // 归还时取出当前会话供NebulaSessionPool缓存
+    synchronized Session detach() {
+        Session detached = session;
+        if (detached != null) {
+            balancer.release(host);
+            session = null;
+        }
+        return detached;
+    }
+
+    @Override
+    public synchronized boolean ping() {
+        return session != null && session.ping();
+    }
+
+    @Override
+    public synchronized boolean pingSession() {
+        return session != null && session.pingSession();
+    }
+
+    @Override
+    public synchronized void release() {
+        released = true;
+        discard();
+    }
+
+    @Override
+    public synchronized HostAddress getGraphHost() {
+        return host;
+    }
+}
@@ -0,0 +1,491 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.BoolColumn;
+import com.alibaba.datax.common.element.BytesColumn;
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.DateColumn;
+import com.alibaba.datax.common.element.DoubleColumn;
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * 批次的本地磁盘缓冲(spool)
+ * graphd长时间不可用导致批次重试耗尽时, 将批次的record序列化后追加到本地分段文件中, 任务继续读取数据源;
+ * 缓冲的批次写入成功后才在提交文件中记录其偏移量, 分段中的批次全部提交后删除该分段;
+ * 任务失败重启后使用同一目录即可重放未提交的批次, 不必为了graphd的短暂故障重新抽取数据源.
+ * 重放时逐个批次读取, 内存中只有当前批次, 并跳过各分段已连续提交的部分, 缓冲的大小不受内存限制.
+ * 分段文件中每个批次的格式为: [payload长度][CRC32][行数, (列数, (类型, 值)...)...], 不完整的尾部批次在读取时忽略.
+ * 每个Task使用spoolDir下的task-N子目录, 重新运行时Task数变少的话, 多出的子目录由Job分配给现有的Task重放
+ */
+public class BatchSpool {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchSpool.class);
+
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String COMMIT_SUFFIX = ".commit";
+    private static final String TASK_DIR_PREFIX = "task-";
+
+    // 缓冲中的一个批次
+    public static class Batch {
+        final long segment;
+        final long offset;
+        // 下一个批次的偏移量
+        final long end;
+        final List<Record> records;
+        // 上次运行缓冲的批次 其record不属于本次运行接收的数据
+        final boolean previousRun;
+
+        Batch(long segment, long offset, long end, List<Record> records, boolean previousRun) {
+            this.segment = segment;
+            this.offset = offset;
+            this.end = end;
+            this.records = records;
+            this.previousRun = previousRun;
+        }
+    }
+
+    private final File dir;
+    private final long segmentBytes;
+    // 各分段中未提交的批次数
+    private final Map<Long, Integer> uncommitted = new HashMap<>();
+    // 各分段从头开始已连续提交到的偏移量 重放时从这里开始读取
+    private final Map<Long, Long> replayFrom = new HashMap<>();
+    // 本次运行写入的第一个分段 编号更小的分段为上次运行遗留
+    private final long firstSegment;
+
+    private long activeSegment;
+    private DataOutputStream activeOut;
+    private FileOutputStream activeFile;
+    private long activeSize;
+
+    public BatchSpool(File dir, long segmentBytes) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create spool directory " + dir);
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        // 新的批次总是写入新的分段 不追加到上次运行遗留的分段
+        List<Long> segments = segments();
+        this.activeSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        this.firstSegment = activeSegment + 1;
+        for (long segment : segments) {
+            Set<Long> committed = readCommitted(segment);
+            int count = 0;
+            long from = 0;
+            try (SegmentReader reader = new SegmentReader(segment, 0)) {
+                while (reader.advance()) {
+                    if (!committed.contains(reader.offset)) {
+                        count++;
+                    } else if (count == 0) {
+                        from = reader.position;
+                    }
+                }
+            }
+            uncommitted.put(segment, count);
+            replayFrom.put(segment, from);
+        }
+    }
+
+    // 未提交的批次数
+    public synchronized int size() {
+        int size = 0;
+        for (int count : uncommitted.values()) {
+            size += count;
+        }
+        return size;
+    }
+
+    // 追加一个批次并刷盘 返回后即可丢弃内存中的record
+    public synchronized void append(List<Record> records) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeInt(records.size());
+        for (Record record : records) {
+            out.writeInt(record.getColumnNumber());
+            for (int i = 0; i < record.getColumnNumber(); i++) {
+                writeColumn(out, record.getColumn(i));
+            }
+        }
+        byte[] data = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        if (activeOut == null || activeSize >= segmentBytes) {
+            roll();
+        }
+        activeOut.writeInt(data.length);
+        activeOut.writeLong(crc.getValue());
+        activeOut.write(data);
+        activeOut.flush();
+        activeFile.getFD().sync();
+        activeSize += 12 + data.length;
+        uncommitted.merge(activeSegment, 1, Integer::sum);
+    }
+
+    // 按写入顺序逐个读取未提交的批次 使用完毕后关闭
+    public synchronized Pending pending() {
+        return new Pending(segments());
+    }
+
+    // 未提交批次的游标 逐个分段顺序读取 只反序列化当前批次
+    public class Pending implements Closeable {
+        private final Iterator<Long> segments;
+        private SegmentReader reader;
+        private Set<Long> committed;
+
+        Pending(List<Long> segments) {
+            this.segments = segments.iterator();
+        }
+
+        // 下一个未提交的批次 没有时返回null
+        public Batch next() throws IOException {
+            while (true) {
+                if (reader == null) {
+                    if (!segments.hasNext()) {
+                        return null;
+                    }
+                    long segment = segments.next();
+                    synchronized (BatchSpool.this) {
+                        // 已全部提交并删除的分段
+                        if (!uncommitted.containsKey(segment)) {
+                            continue;
+                        }
+                        committed = readCommitted(segment);
+                        reader = new SegmentReader(segment, replayFrom.getOrDefault(segment, 0L));
+                    }
+                }
+                if (!reader.advance()) {
+                    reader.close();
+                    reader = null;
+                } else if (!committed.contains(reader.offset)) {
+                    return reader.batch();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+    }
+
+    // 批次写入成功后提交 分段全部提交且不再写入时删除
+    // 提交记录不刷盘 崩溃时丢失的提交只会导致批次被重复写入 insert为覆盖写 重复写入无影响
+    public synchronized void commit(Batch batch) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(file(batch.segment, COMMIT_SUFFIX), true))) {
+            out.writeLong(batch.offset);
+        }
+        if (replayFrom.getOrDefault(batch.segment, 0L) == batch.offset) {
+            replayFrom.put(batch.segment, batch.end);
+        }
+        int remaining = uncommitted.merge(batch.segment, -1, Integer::sum);
+        if (remaining <= 0 && (batch.segment != activeSegment || activeOut == null)) {
+            delete(batch.segment);
+        }
+    }
+
+    // 关闭当前分段 已全部提交的分段一并删除
+    public synchronized void close() throws IOException {
+        if (activeOut != null) {
+            activeOut.close();
+            activeOut = null;
+        }
+        for (Long segment : new ArrayList<>(uncommitted.keySet())) {
+            if (uncommitted.get(segment) <= 0) {
+                delete(segment);
+            }
+        }
+    }
+
+    // 第task个Task的缓冲目录
+    public static File taskDir(File root, int task) {
+        return new File(root, TASK_DIR_PREFIX + task);
+    }
+
+    // 编号不小于taskNum且仍有分段文件的Task缓冲目录 按编号排序
+    public static List<File> orphanedTaskDirs(File root, int taskNum) {
+        TreeMap<Integer, File> orphaned = new TreeMap<>();
+        File[] dirs = root.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return new ArrayList<>();
+        }
+        for (File dir : dirs) {
+            String name = dir.getName();
+            if (!name.matches(TASK_DIR_PREFIX + "\\d+")) {
+                continue;
+            }
+            int task = Integer.parseInt(name.substring(TASK_DIR_PREFIX.length()));
+            String[] segments = dir.list((d, file) -> file.endsWith(SEGMENT_SUFFIX));
+            if (task >= taskNum && segments != null && segments.length > 0) {
+                orphaned.put(task, dir);
+            }
+        }
+        return new ArrayList<>(orphaned.values());
+    }
+
+    private void roll() throws IOException {
+        if (activeOut != null) {
+            activeOut.close();
+        }
+        activeSegment++;
+        activeFile = new FileOutputStream(file(activeSegment, SEGMENT_SUFFIX), true);
+        activeOut = new DataOutputStream(new BufferedOutputStream(activeFile, 64 * 1024));
+        activeSize = 0;
+        LOG.info("Spool batches to " + file(activeSegment, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> segments() {
+        List<Long> segments = new ArrayList<>();
+        String[] names = dir.list();
+        if (names == null) {
+            return segments;
+        }
+        for (String name : names) {
+            if (name.startsWith("segment-") && name.endsWith(SEGMENT_SUFFIX)) {
+                segments.add(Long.parseLong(name.substring(8, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    // 顺序读取一个分段中完整的批次 长度以打开时为准 之后追加的批次留到下次读取
+    private class SegmentReader implements Closeable {
+        private final long segment;
+        private final File file;
+        private final long length;
+        private final DataInputStream in;
+        // 当前批次的偏移量 及下一个批次的偏移量
+        long offset;
+        long position;
+        private byte[] data;
+
+        SegmentReader(long segment, long from) throws IOException {
+            this.segment = segment;
+            this.file = file(segment, SEGMENT_SUFFIX);
+            this.length = file.length();
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            while (position < from) {
+                long skipped = in.skip(from - position);
+                if (skipped <= 0) {
+                    break;
+                }
+                position += skipped;
+            }
+        }
+
+        // 读取下一个批次的payload 分段结束或遇到不完整的批次时返回false
+        boolean advance() throws IOException {
+            if (position + 12 > length) {
+                return false;
+            }
+            int size = in.readInt();
+            long checksum = in.readLong();
+            if (size < 0 || position + 12 + size > length) {
+                return false;
+            }
+            data = new byte[size];
+            in.readFully(data);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if (crc.getValue() != checksum) {
+                // 写入中途崩溃留下的不完整批次
+                LOG.warn("Ignore corrupted batch at " + position + " of " + file);
+                position = length;
+                return false;
+            }
+            offset = position;
+            position += 12 + size;
+            return true;
+        }
+
+        // 反序列化当前批次
+        Batch batch() throws IOException {
+            DataInputStream payload = new DataInputStream(new ByteArrayInputStream(data));
+            int rows = payload.readInt();
+            List<Record> records = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                SpooledRecord record = new SpooledRecord(payload.readInt());
+                for (int j = 0, n = record.columns.length; j < n; j++) {
+                    record.columns[j] = readColumn(payload);
+                }
+                records.add(record);
+            }
+            return new Batch(segment, offset, position, records, segment < firstSegment);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // 类型 是否为null 值
+    private static void writeColumn(DataOutputStream out, Column column) throws IOException {
+        Column.Type type = column == null ? Column.Type.NULL : column.getType();
+        out.writeByte(type.ordinal());
+        boolean isNull = column == null || column.getRawData() == null;
+        out.writeBoolean(isNull);
+        if (isNull) {
+            return;
+        }
+        switch (type) {
+            case BOOL:
+                out.writeBoolean(column.asBoolean());
+                break;
+            case DATE:
+                out.writeByte(((DateColumn) column).getSubType().ordinal());
+                out.writeLong(column.asLong());
+                break;
+            case BYTES:
+                byte[] bytes = column.asBytes();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                break;
+            default:
+                // 数值按字符串保存 不损失BigInteger/BigDecimal的精度
+                byte[] value = column.asString().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(value.length);
+                out.write(value);
+        }
+    }
+
+    private static Column readColumn(DataInputStream in) throws IOException {
+        Column.Type type = Column.Type.values()[in.readByte()];
+        boolean isNull = in.readBoolean();
+        switch (type) {
+            case BOOL:
+                return new BoolColumn(isNull ? null : in.readBoolean());
+            case DATE:
+                if (isNull) {
+                    return new DateColumn((Long) null);
+                }
+                DateColumn.DateType subType = DateColumn.DateType.values()[in.readByte()];
+                DateColumn date = new DateColumn(in.readLong());
+                date.setSubType(subType);
+                return date;
+            case BYTES:
+                if (isNull) {
+                    return new BytesColumn(null);
+                }
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new BytesColumn(bytes);
+            default:
+                String value = null;
+                if (!isNull) {
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    value = new String(data, StandardCharsets.UTF_8);
+                }
+                if (type == Column.Type.INT || type == Column.Type.LONG) {
+                    return new LongColumn(value);
+                } else if (type == Column.Type.DOUBLE) {
+                    return new DoubleColumn(value);
+                }
+                return new StringColumn(value);
+        }
+    }
+
+    private Set<Long> readCommitted(long segment) throws IOException {
+        Set<Long> committed = new HashSet<>();
+        File file = file(segment, COMMIT_SUFFIX);
+        if (!file.exists()) {
+            return committed;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            // 不完整的尾部偏移量忽略
+            for (long i = 0, n = file.length() / 8; i < n; i++) {
+                committed.add(in.readLong());
+            }
+        }
+        return committed;
+    }
+
+    private void delete(long segment) {
+        uncommitted.remove(segment);
+        replayFrom.remove(segment);
+        File commitFile = file(segment, COMMIT_SUFFIX);
+        if (file(segment, SEGMENT_SUFFIX).delete() && commitFile.exists() && !commitFile.delete()) {
+            LOG.warn("Failed to delete " + commitFile);
+        }
+    }
+
+    private File file(long segment, String suffix) {
+        return new File(dir, String.format("segment-%06d%s", segment, suffix));
+    }
+
+    // 从缓冲中还原的record
+    static class SpooledRecord implements Record {
+        private Column[] columns;
+        private Map<String, String> meta;
+
+        SpooledRecord(int columnNumber) {
+            this.columns = new Column[columnNumber];
+        }
+
+        @Override
+        public void addColumn(Column column) {
+            columns = Arrays.copyOf(columns, columns.length + 1);
+            columns[columns.length - 1] = column;
+        }
+
+        @Override
+        public void setColumn(int i, Column column) {
+            if (i >= columns.length) {
+                columns = Arrays.copyOf(columns, i + 1);
+            }
+            columns[i] = column;
+        }
+
+        @Override
+        public Column getColumn(int i) {
+            return i < columns.length ? columns[i] : null;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return columns.length;
+        }
+
+        @Override
+        public int getByteSize() {
+            int size = 0;
+            for (Column column : columns) {
+                if (column != null) size += column.getByteSize();
+            }
+            return size;
+        }
+
+        @Override
+        public int getMemorySize() {
+            return getByteSize();
+        }
+
+        @Override
+        public void setMeta(Map<String, String> meta) {
+            this.meta = meta;
+        }
+
+        @Override
+        public Map<String, String> getMeta() {
+            return meta;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(columns);
+        }
+    }
+}
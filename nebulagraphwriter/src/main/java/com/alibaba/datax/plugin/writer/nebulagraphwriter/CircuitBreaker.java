@@ -0,0 +1,88 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 熔断器
+ * 连续出现failureThreshold次可重试的集群异常后打开, 打开期间所有写入(包括接收端的批次提交)阻塞等待;
+ * openMillis后进入半开状态, 只放行一个线程试探写入, 其余写入线程等待试探结果: 成功则关闭, 失败则重新打开.
+ * 试探线程openMillis内未返回结果时, 放行下一个线程重新试探
+ */
+public class CircuitBreaker {
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    // OPEN时为允许试探的时间 HALF_OPEN时为本次试探的期限
+    private long openUntil;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    // 写入前调用 关闭时直接返回; 打开期间阻塞, 到期后只有一个线程获得试探的机会, 其余线程等待试探结果
+    public synchronized void acquire() throws InterruptedException {
+        while (state != State.CLOSED) {
+            long waitMillis = openUntil - System.currentTimeMillis();
+            if (waitMillis <= 0) {
+                if (state == State.OPEN) {
+                    LOG.info("Circuit breaker half-open, probe graphd with one batch.");
+                }
+                state = State.HALF_OPEN;
+                openUntil = System.currentTimeMillis() + openMillis;
+                return;
+            }
+            wait(waitMillis);
+        }
+    }
+
+    // 熔断器打开时阻塞直到允许试探写入 不占用试探的机会 供接收端暂停提交批次
+    public synchronized void awaitClosed() throws InterruptedException {
+        while (state == State.OPEN) {
+            long waitMillis = openUntil - System.currentTimeMillis();
+            if (waitMillis <= 0) {
+                return;
+            }
+            wait(waitMillis);
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            LOG.info("Circuit breaker closed, graphd recovered.");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        openUntil = 0;
+        notifyAll();
+    }
+
+    public synchronized void onFailure() {
+        ++consecutiveFailures;
+        if (state == State.HALF_OPEN) {
+            LOG.warn("Circuit breaker probe failed, pause " + openMillis + "ms.");
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            LOG.warn("Circuit breaker opened after " + consecutiveFailures + " consecutive failures, pause "
+                    + openMillis + "ms.");
+        } else if (state == State.CLOSED) {
+            return;
+        }
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openMillis;
+        notifyAll();
+    }
+
+    // 打开或正在试探时返回true 此时新的批次不应发往graphd
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED && openUntil > System.currentTimeMillis();
+    }
+}
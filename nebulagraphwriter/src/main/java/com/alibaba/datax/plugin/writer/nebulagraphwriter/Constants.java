@@ -2,4 +2,29 @@ package com.alibaba.datax.plugin.writer.nebulagraphwriter;
 
 public class Constants {
     public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final String DEFAULT_GRAPH_ADDRESS = "127.0.0.1:9669";
+    public static final int DEFAULT_MAX_CONN_SIZE = 64;
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 2;
+    public static final long DEFAULT_BATCH_BYTE_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_TARGET_LATENCY_MS = 500;
+    // 每行在语句中的额外开销 如VID、引号和分隔符
+    public static final int ROW_OVERHEAD_BYTES = 64;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    public static final long DEFAULT_RETRY_BACKOFF_MS = 200;
+    public static final long DEFAULT_MAX_RETRY_BACKOFF_MS = 10000;
+    public static final int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 5;
+    public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_MS = 10000;
+    // 单个graphd的摘除阈值小于熔断阈值 先切换到其他graphd再整体熔断
+    public static final int DEFAULT_HOST_ERROR_THRESHOLD = 2;
+    public static final long DEFAULT_HOST_EJECT_MS = 30000;
+    public static final long DEFAULT_METRICS_INTERVAL_SEC = 30;
+    // 异常退出时等待写入线程退出的时间
+    public static final long WORKER_ABORT_TIMEOUT_MS = 5000;
+    public static final long DEFAULT_SPOOL_SEGMENT_BYTES = 64 * 1024 * 1024;
+    public static final String WRITE_MODE_NGQL = "ngql";
+    public static final String WRITE_MODE_SST = "sst";
+    public static final String WRITE_MODE_PARAMETERIZED = "parameterized";
+    // 每个表缓存的参数化语句模板数
+    public static final int MAX_PARAMETERIZED_TEMPLATES = 8;
+    public static final long DEFAULT_SST_BUFFER_BYTES = 256 * 1024 * 1024;
 }
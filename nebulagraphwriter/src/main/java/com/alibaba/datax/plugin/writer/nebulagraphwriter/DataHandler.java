@@ -4,5 +4,9 @@ import com.alibaba.datax.common.plugin.RecordReceiver;
 import com.alibaba.datax.common.plugin.TaskPluginCollector;
 
 public interface DataHandler {
-    int handle(RecordReceiver rec, TaskPluginCollector collector);
+    // 返回写入成功的行数
+    long handle(RecordReceiver rec, TaskPluginCollector collector);
+
+    // 释放handle过程中占用的连接等资源
+    void close();
 }
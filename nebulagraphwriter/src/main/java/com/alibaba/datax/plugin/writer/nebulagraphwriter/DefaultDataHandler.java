@@ -1,33 +1,26 @@
 package com.alibaba.datax.plugin.writer.nebulagraphwriter;
 
-import com.alibaba.datax.common.element.Column;
 import com.alibaba.datax.common.element.Record;
 import com.alibaba.datax.common.exception.DataXException;
 import com.alibaba.datax.common.plugin.RecordReceiver;
 import com.alibaba.datax.common.plugin.TaskPluginCollector;
 import com.alibaba.datax.common.util.Configuration;
 import com.alibaba.fastjson.JSONObject;
-import com.vesoft.nebula.jdbc.impl.NebulaDriver;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import com.vesoft.nebula.client.graph.NebulaPoolConfig;
 import com.vesoft.nebula.client.graph.data.HostAddress;
-import com.vesoft.nebula.client.graph.exception.AuthFailedException;
-import com.vesoft.nebula.client.graph.exception.ClientServerIncompatibleException;
-import com.vesoft.nebula.client.graph.exception.IOErrorException;
-import com.vesoft.nebula.client.graph.exception.NotValidConnectionException;
-import com.vesoft.nebula.client.graph.net.NebulaPool;
+import com.vesoft.nebula.client.graph.data.ResultSet;
 import com.vesoft.nebula.client.graph.net.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.UnsupportedEncodingException;
-import java.net.UnknownHostException;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-import java.sql.Statement;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DefaultDataHandler implements DataHandler {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultDataHandler.class);
@@ -36,7 +29,37 @@ public class DefaultDataHandler implements DataHandler {
     private final String username;
     private final String password;
     private final String jdbcUrl;
+    private final List<HostAddress> graphAddress;
+    private final int maxConnSize;
+    private final int hostErrorThreshold;
+    private final long hostEjectMs;
     private final int batchSize;
+    private final boolean pipelined;
+    private final int maxInFlightBatches;
+    private final int writeThreads;
+    private final boolean combineStatements;
+    // 以参数化语句写入 值作为参数发送而不是拼接为字面量
+    private final boolean parameterized;
+    private final boolean concurrentTables;
+    private final boolean deduplicate;
+    private final VidStrategy vidStrategy;
+    private final boolean partitionGrouping;
+    private final int partitionBufferSize;
+    private int partitionNum;
+    private final long batchByteSize;
+    private final AdaptiveBatchController batchController;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryExecutor retryExecutor;
+    private final WriterMetrics metrics;
+    private final BatchSpool spool;
+    // 需要重放的所有缓冲 接管的遗留目录在前 当前Task的缓冲在后
+    private final List<BatchSpool> spools = new ArrayList<>();
+    // 同一时刻只有一个线程重放缓冲的批次
+    private final Object spoolLock = new Object();
+    // 本次运行缓冲后重放写入的行数 计入本次写入的行数
+    private final LongAdder respooledRows = new LongAdder();
+    // 重放上次运行的批次时产生的脏数据 不属于本次接收的record
+    private final LongAdder previousRunDirtyRows = new LongAdder();
 
     private final List<String> tables;
     private final List<String> columns;
@@ -46,300 +69,643 @@ public class DefaultDataHandler implements DataHandler {
     private Map<String, List<ColumnMeta>> columnMetas;
 
     private SchemaManager schemaManager;
+    private volatile Map<String, WritePlan> writePlans;
+    private volatile Map<String, ParameterizedInsert> parameterizedInserts;
+    private NebulaSessionPool sessionPool;
+    // 并发写入各表时 除第一个表外每个表使用的会话 按批次所在的会话区分
+    private final Map<Session, Session[]> tableSessions = new ConcurrentHashMap<>();
+    private ExecutorService tableExecutor;
+    private NebulaPartitioner partitioner;
 
     // Setters for List and Schema
     public void setTableMetas(Map<String, TableMeta> tableMetas) {
         this.tableMetas = tableMetas;
+        this.writePlans = null;
     }
 
     public void setColumnMetas(Map<String, List<ColumnMeta>> columnMetas) {
         this.columnMetas = columnMetas;
+        this.writePlans = null;
     }
 
     public void setSchemaManager(SchemaManager schemaManager) {
         this.schemaManager = schemaManager;
     }
 
-    // 数据库驱动加载常用方法 利用静态方法加载数据库驱动类
-    static {
-        try {
-            Class.forName("com.vesoft.nebula.jdbc.NebulaDriver");
-        } catch (ClassNotFoundException ignored) {
-
-        }
+    // 使用指定的连接池 close时释放
+    void setSessionPool(NebulaSessionPool sessionPool) {
+        this.sessionPool = sessionPool;
     }
 
     public DefaultDataHandler(Configuration conf, TaskPluginCollector taskPluginCollector) {
         this.username = conf.getString(Key.USERNAME);
         this.password = conf.getString(Key.PASSWORD);
         this.jdbcUrl = conf.getString(Key.JDBC_URL);
+        this.graphAddress = NebulaSessionPool.parseAddresses(
+                conf.getList(Key.GRAPH_ADDRESS, Collections.singletonList(Constants.DEFAULT_GRAPH_ADDRESS), String.class));
+        this.maxConnSize = conf.getInt(Key.MAX_CONN_SIZE, Constants.DEFAULT_MAX_CONN_SIZE);
+        this.hostErrorThreshold = conf.getInt(Key.HOST_ERROR_THRESHOLD, Constants.DEFAULT_HOST_ERROR_THRESHOLD);
+        this.hostEjectMs = conf.getLong(Key.HOST_EJECT_MS, Constants.DEFAULT_HOST_EJECT_MS);
         this.batchSize = conf.getInt(Key.BATCH_SIZE, Constants.DEFAULT_BATCH_SIZE);
+        this.pipelined = conf.getBool(Key.PIPELINED, false);
+        this.maxInFlightBatches = conf.getInt(Key.MAX_IN_FLIGHT_BATCHES, Constants.DEFAULT_MAX_IN_FLIGHT_BATCHES);
+        this.writeThreads = conf.getInt(Key.WRITE_THREADS, 1);
+        this.combineStatements = conf.getBool(Key.COMBINE_STATEMENTS, false);
+        this.parameterized = Constants.WRITE_MODE_PARAMETERIZED.equalsIgnoreCase(
+                conf.getString(Key.WRITE_MODE, Constants.WRITE_MODE_NGQL));
+        this.concurrentTables = conf.getBool(Key.CONCURRENT_TABLES, false);
+        this.deduplicate = conf.getBool(Key.DEDUPLICATE, false);
+        this.vidStrategy = VidStrategy.fromConfiguration(conf);
+        this.partitionGrouping = conf.getBool(Key.PARTITION_GROUPING, false);
+        this.partitionNum = conf.getInt(Key.PARTITION_NUM, 0);
+        this.partitionBufferSize = conf.getInt(Key.PARTITION_BUFFER_SIZE, batchSize * 10);
+        this.batchByteSize = conf.getLong(Key.BATCH_BYTE_SIZE, Constants.DEFAULT_BATCH_BYTE_SIZE);
+        this.batchController = new AdaptiveBatchController(batchSize, conf.getBool(Key.ADAPTIVE_BATCH, false),
+                conf.getInt(Key.MAX_BATCH_SIZE, batchSize * 4),
+                conf.getLong(Key.TARGET_LATENCY_MS, Constants.DEFAULT_TARGET_LATENCY_MS));
+        this.metrics = new WriterMetrics(conf.getLong(Key.METRICS_INTERVAL_SEC, Constants.DEFAULT_METRICS_INTERVAL_SEC));
+        // 同一个Task的所有写入线程共享熔断器
+        this.circuitBreaker = new CircuitBreaker(
+                conf.getInt(Key.CIRCUIT_BREAKER_THRESHOLD, Constants.DEFAULT_CIRCUIT_BREAKER_THRESHOLD),
+                conf.getLong(Key.CIRCUIT_BREAKER_OPEN_MS, Constants.DEFAULT_CIRCUIT_BREAKER_OPEN_MS));
+        this.retryExecutor = new RetryExecutor(conf.getInt(Key.MAX_RETRIES, Constants.DEFAULT_MAX_RETRIES),
+                conf.getLong(Key.RETRY_BACKOFF_MS, Constants.DEFAULT_RETRY_BACKOFF_MS),
+                conf.getLong(Key.MAX_RETRY_BACKOFF_MS, Constants.DEFAULT_MAX_RETRY_BACKOFF_MS), circuitBreaker,
+                metrics.retries::increment);
+        String spoolDir = conf.getString(Key.SPOOL_DIR);
+        long spoolSegmentBytes = conf.getLong(Key.SPOOL_SEGMENT_BYTES, Constants.DEFAULT_SPOOL_SEGMENT_BYTES);
+        try {
+            if (spoolDir != null) {
+                for (String adoptedDir : conf.getList(Key.SPOOL_ADOPTED_DIRS, Collections.<String>emptyList(),
+                        String.class)) {
+                    spools.add(new BatchSpool(new File(adoptedDir), spoolSegmentBytes));
+                }
+            }
+            this.spool = spoolDir == null ? null : new BatchSpool(new File(spoolDir), spoolSegmentBytes);
+        } catch (IOException e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                    "Failed to open spool directory " + spoolDir + ": " + e.getMessage(), e);
+        }
+        if (spool != null) {
+            spools.add(spool);
+        }
         this.tables = conf.getList(Key.TABLE, String.class);
         this.columns = conf.getList(Key.COLUMN, String.class);
         this.edgeTypes = conf.getList(Key.EDGE_TYPE, JSONObject.class);
         this.taskPluginCollector = taskPluginCollector;
+        // 使用Job下发的元信息 Task启动时无需再查询metad
+        Map<String, TableMeta> tableMetas = new HashMap<>();
+        Map<String, List<ColumnMeta>> columnMetas = new HashMap<>();
+        if (SchemaManager.readFromConfiguration(conf, tableMetas, columnMetas)) {
+            this.tableMetas = tableMetas;
+            this.columnMetas = columnMetas;
+        }
     }
 
     @Override
-    public int handle(RecordReceiver rec, TaskPluginCollector collector) {
-        int count = 0, affectedRows = 0;
+    public long handle(RecordReceiver rec, TaskPluginCollector collector) {
+        long count = 0, affectedRows = 0;
 
+        // 会话均借自JVM内共享的连接池 handle结束时归还 连接池在close时释放
+        List<Session> sessions = new ArrayList<>();
+        // 可能仍被写入线程或并发写表的线程使用的会话 直接释放而不归还
+        Set<Session> unsafeSessions = new HashSet<>();
         try {
-            NebulaDriver defaultDriver = new NebulaDriver();
-            Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
-            Session session = getSession();
-            LOG.info("Connection[ jdbcUrl: " + jdbcUrl + ", username: " + username
+            if (sessionPool == null) {
+                this.sessionPool = NebulaSessionPool.acquire(graphAddress, username, password,
+                        NebulaSessionPool.parseSpace(jdbcUrl), maxConnSize, hostErrorThreshold, hostEjectMs);
+            }
+            Session session = sessionPool.borrowSession();
+            sessions.add(session);
+            LOG.info("Connection[ jdbcUrl: " + jdbcUrl + ", graphAddress: " + graphAddress + ", username: " + username
                     + "] established.");
-            // 初始化SchemaManager 并且进行元信息的加载
-            if (schemaManager == null) {
+            // 未收到Job下发的元信息时 初始化SchemaManager 并且进行元信息的加载
+            if (tableMetas == null || columnMetas == null) {
                 this.schemaManager = new SchemaManager(session);
                 // 根据Configuration 也就是配置文件中的tables 表名列表 加载 tableMeta
                 this.tableMetas = schemaManager.loadTableMeta(tables);
                 // 根据Configuration 配置文件中tables 表名列表 加载 columnMeta列表(一个表对应一个字段列表)
                 this.columnMetas = schemaManager.loadColumnMeta(tables, tableMetas);
             }
+            // 写入线程启动前编译好所有表的写入计划
+            writePlans();
+            if (partitionGrouping && partitioner == null) {
+                // 未收到Job下发的分片数时 自行查询
+                if (partitionNum <= 0) {
+                    this.partitionNum = new SchemaManager(session).loadPartitionNum(NebulaSessionPool.parseSpace(jdbcUrl));
+                }
+                this.partitioner = new NebulaPartitioner(partitionNum);
+            }
+            // 先重放上次运行未写入的批次 这些record不计入本次接收的行数
+            if (spool != null && spooledBatches() > 0) {
+                LOG.info("Replay " + spooledBatches() + " spooled batches of the previous run.");
+                drainSpool(session);
+            }
+            if (concurrentTables && tables.size() > 1 && tableExecutor == null) {
+                this.tableExecutor = Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "nebula-table-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+
+            // 流水线模式下由独立的写入线程完成nGQL构建和写入 接收端只负责组装批次
+            // writeThreads > 1时每个写入线程持有独立的会话 record按VID哈希路由到固定的写入线程
+            int workerNum = writeThreads > 1 ? writeThreads : (pipelined ? 1 : 0);
+            List<WriteWorker> workers = new ArrayList<>(workerNum);
+            List<Session> workerSessions = new ArrayList<>(workerNum);
+            try {
+                for (int i = 0; i < workerNum; i++) {
+                    Session workerSession = i == 0 ? session : sessionPool.borrowSession();
+                    if (i > 0) sessions.add(workerSession);
+                    workerSessions.add(workerSession);
+                    WriteWorker worker = new WriteWorker("nebula-writer-" + Thread.currentThread().getName() + "-" + i,
+                            maxInFlightBatches, batch -> writeBuffer(workerSession, batch));
+                    workers.add(worker);
+                    worker.start();
+                }
 
-            // writer端Record缓存队列
-            List<Record> recordBuffer = new ArrayList();
-            Record record;
-            for (int i = 1; (record = rec.getFromReader()) != null; i++) {
-                if (i % batchSize != 0) {
+                // writer端Record缓存队列 每个写入线程对应一个
+                // 按分片组织批次时每个分片对应一个 分片固定由编号取模后的写入线程写入
+                int bucketNum = partitioner != null ? partitioner.getPartitionNum() : Math.max(1, workerNum);
+                List<List<Record>> recordBuffers = new ArrayList<>();
+                long[] bufferBytes = new long[bucketNum];
+                for (int i = 0; i < bucketNum; i++) {
+                    recordBuffers.add(new ArrayList<>(partitioner != null ? 16 : batchSize));
+                }
+                int bufferedRows = 0;
+                Record record;
+                long waitStart = System.nanoTime();
+                while ((record = rec.getFromReader()) != null) {
+                    metrics.readWaitNanos.add(System.nanoTime() - waitStart);
+                    int bucket = bucketOf(record, workerNum);
+                    List<Record> recordBuffer = recordBuffers.get(bucket);
                     recordBuffer.add(record); // 逐渐将接受到的record加入到缓冲中
-                } else {
-                    try {
-                        // i == batchSize倍数时 还差一个record未加入到缓冲队列中
-                        recordBuffer.add(record);
-                        affectedRows += writeBatch(conn, recordBuffer);
-                    } catch (Exception e) {
-                        // 脏数据处理
-                        LOG.warn("Insert one row of record, due to error: " + e.getMessage());
-                        affectedRows += writeEachRow(conn, recordBuffer);
+                    bufferBytes[bucket] += estimateBytes(record);
+                    bufferedRows++;
+                    count++;
+                    // 行数或估算的语句字节数任一达到上限即写入
+                    if (recordBuffer.size() >= batchController.batchSize() || bufferBytes[bucket] >= batchByteSize) {
+                        bufferedRows -= recordBuffer.size();
+                        affectedRows += flushBucket(session, workers, recordBuffers, bufferBytes, bucket);
+                        metrics.maybeLog();
+                    } else if (partitioner != null && bufferedRows >= partitionBufferSize) {
+                        // 所有分片缓冲的总行数达到上限时 先写入积攒最多的分片
+                        int largest = largestBucket(recordBuffers);
+                        bufferedRows -= recordBuffers.get(largest).size();
+                        affectedRows += flushBucket(session, workers, recordBuffers, bufferBytes, largest);
+                        metrics.maybeLog();
                     }
-                    recordBuffer.clear();
+                    waitStart = System.nanoTime();
                 }
-                count++;
-            }
-            // 如果缓冲队列仍有record 即当最后一部分 也就是从发送端接收完毕 但是未满足batchSize的record集合
-            if (!recordBuffer.isEmpty()) {
-                try {
-                    affectedRows += writeBatch(conn, recordBuffer);
-                } catch (Exception e) {
-                    // 脏数据处理
-                    LOG.warn("Insert one row of record, due to error: " + e.getMessage());
-                    affectedRows += writeEachRow(conn, recordBuffer);
+                // 如果缓冲队列仍有record 即当最后一部分 也就是从发送端接收完毕 但是未满足batchSize的record集合
+                for (int bucket = 0; bucket < recordBuffers.size(); bucket++) {
+                    if (!recordBuffers.get(bucket).isEmpty()) {
+                        affectedRows += flushBucket(session, workers, recordBuffers, bufferBytes, bucket);
+                    }
+                }
+                for (WriteWorker worker : workers) {
+                    affectedRows += worker.finish();
+                }
+                if (spool != null) {
+                    // 数据读取完毕后 写入剩余的缓冲批次 集群仍不可用时保留在磁盘上 重新运行任务即可重放
+                    if (!drainSpool(session)) {
+                        throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RETRYABLE_EXCEPTION,
+                                spooledBatches() + " batches are kept in spool directory, rerun the job to replay them.");
+                    }
+                    affectedRows += respooledRows.sum();
+                }
+            } catch (Exception e) {
+                for (int i = 0; i < workers.size(); i++) {
+                    if (!workers.get(i).abort(Constants.WORKER_ABORT_TIMEOUT_MS)) {
+                        LOG.warn("Writer thread " + i + " did not stop in " + Constants.WORKER_ABORT_TIMEOUT_MS
+                                + "ms, release its session.");
+                        unsafeSessions.add(workerSessions.get(i));
+                    }
+                }
+                // 并发写表的线程可能仍在执行
+                for (Session[] extraSessions : tableSessions.values()) {
+                    unsafeSessions.addAll(Arrays.asList(extraSessions).subList(1, extraSessions.length));
                 }
-                recordBuffer.clear();
+                throw e;
             }
 
+        } catch (DataXException e) {
+            // 保留错误码 如RETRYABLE_EXCEPTION
+            throw e;
         } catch (Exception e) {
-            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION, e.getMessage());
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION, e.getMessage(), e);
+        } finally {
+            for (Session[] extraSessions : tableSessions.values()) {
+                sessions.addAll(Arrays.asList(extraSessions).subList(1, extraSessions.length));
+            }
+            tableSessions.clear();
+            for (Session session : sessions) {
+                if (unsafeSessions.contains(session)) {
+                    // 等待会话上正在执行的语句结束后释放
+                    session.release();
+                } else if (sessionPool != null) {
+                    sessionPool.returnSession(session);
+                }
+            }
+            // 失败的运行同样上报吞吐、耗时及重试等统计
+            metrics.report(collector);
         }
 
-        if (affectedRows != count) {
-            LOG.error("record missing");
+        long dirtyRows = metrics.dirtyRows.sum() - previousRunDirtyRows.sum();
+        if (affectedRows + dirtyRows != count) {
+            LOG.error("record missing: received " + count + ", written " + affectedRows + ", dirty " + dirtyRows);
         }
 
         return affectedRows;
     }
 
-    // 当record出现脏数据时的写入处理逻辑
-    private int writeEachRow(Connection conn, List<Record> recordBuffer) {
-        int affectedRows = 0;
-        for (Record record : recordBuffer) {
-            List<Record> recordList = new ArrayList<>();
-            recordList.add(record);
+    @Override
+    public void close() {
+        for (BatchSpool batchSpool : spools) {
             try {
-                affectedRows += writeBatch(conn, recordList);
-            } catch (Exception e) {
-                LOG.error(e.getMessage(), e);
-                this.taskPluginCollector.collectDirtyRecord(record, e);
+                batchSpool.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close spool: " + e.getMessage());
             }
         }
+        if (tableExecutor != null) {
+            tableExecutor.shutdownNow();
+            tableExecutor = null;
+        }
+        if (sessionPool != null) {
+            sessionPool.release();
+            sessionPool = null;
+        }
+    }
+
+    // 按第一个表生成的VID计算写入线程编号 保证同一个点的写入顺序
+    private int route(Record record, int workerNum) {
+        // 边与起点存储在一起 按起点VID路由
+        String vid = writePlans().get(tables.get(0)).routingVid(record);
+        return Math.floorMod(vid.hashCode(), workerNum);
+    }
+
+    // record所属的缓冲区 按分片组织时为分片编号减1
+    int bucketOf(Record record, int workerNum) {
+        if (writePlans().get(tables.get(0)).hasNullKey(record)) {
+            // 键为空的记录写入时作为脏数据 放入任一缓冲区即可
+            return 0;
+        }
+        if (partitioner != null) {
+            return writePlans().get(tables.get(0)).partId(partitioner, record) - 1;
+        }
+        return workerNum > 1 ? route(record, workerNum) : 0;
+    }
+
+    private static int largestBucket(List<List<Record>> recordBuffers) {
+        int largest = 0;
+        for (int i = 1; i < recordBuffers.size(); i++) {
+            if (recordBuffers.get(i).size() > recordBuffers.get(largest).size()) largest = i;
+        }
+        return largest;
+    }
+
+    // 写入一个缓冲区 并为其换上新的缓冲区
+    private int flushBucket(Session session, List<WriteWorker> workers, List<List<Record>> recordBuffers,
+                            long[] bufferBytes, int bucket) throws Exception {
+        WriteWorker worker = workers.isEmpty() ? null : workers.get(bucket % workers.size());
+        int affectedRows = flush(session, worker, recordBuffers.get(bucket));
+        // 异步写入时缓冲区会被写入线程持有 因此不能复用
+        recordBuffers.set(bucket, new ArrayList<>(partitioner != null ? 16 : batchController.batchSize()));
+        bufferBytes[bucket] = 0;
         return affectedRows;
     }
 
-    // write写入方法的逻辑实现
-    public int writeBatch(Connection conn, List<Record> recordBuffer) throws Exception {
-        int affectedRows = 0;
-        // 遍历配置文件中待同步的table 根据表类型分别对应写入nGQL语句
-        int tagNo = 0, edgeNo = 0;
-        for (String table : tables) {
-            TableMeta tableMeta = tableMetas.get(table);
-            switch (tableMeta.tableType) {
-                case TAG:
-                    // 参数增加tagNo
-                    affectedRows += writeBatchToTagBynGQL(conn, table, recordBuffer);
-                    tagNo++;
-                    break;
-                case EDGE_TYPE:
-                    affectedRows += writeBatchToEdgeTypeBynGQL(conn, table, recordBuffer, edgeNo);
-                    edgeNo++;
-                    break;
-                default:
+    // 根据元信息为每个表编译写入计划 元信息变化后重新编译
+    private Map<String, WritePlan> writePlans() {
+        Map<String, WritePlan> plans = this.writePlans;
+        if (plans != null) {
+            return plans;
+        }
+        plans = WritePlan.compileAll(tables, tableMetas, columnMetas, columns, edgeTypes, vidStrategy);
+        if (parameterized) {
+            Map<String, ParameterizedInsert> inserts = new HashMap<>();
+            for (int i = 0; i < tables.size(); i++) {
+                inserts.put(tables.get(i), new ParameterizedInsert(plans.get(tables.get(i)), i));
             }
+            this.parameterizedInserts = inserts;
         }
-        // 返回写入成功的行数
-        return affectedRows;
+        this.writePlans = plans;
+        return plans;
     }
 
-    // TAG的写入nGQL的具体实现
-    public int writeBatchToTagBynGQL(Connection conn, String table, List<Record> recordBuffer) throws Exception {
-        List<ColumnMeta> colMetas = this.columnMetas.get(table);
-        // 利用StringBuilder拼接insert语句
-        StringBuilder sb = new StringBuilder();
-        // 拼接sb生成insert nGql语句 (字段部分)
-        sb.append("INSERT VERTEX ").append(table).append(" ")
-                .append(colMetas.stream().filter(colMeta -> columns.contains(colMeta.field))
-                        .map(colMeta -> {return colMeta.field;})
-                        .collect(Collectors.joining(",","(",")")))
-                        .append(" VALUES ");
-
-        // 拼接values部分
-        // insert vertex player(name, age) values "player100":("Lim Kee", 23)
-        // VID由于要求是整个图空间中唯一 并且其并非是节点的标签 其属于独立于标签属性的唯一标识属性
-        // 因此我们采取table+主键的形式生成VID 如有需求则需要在配置文件中指定VID的长度 也就是FIXED_STRING(N)
-        // 中N的大小
-        int row = 0;
-        for (Record record : recordBuffer) {
-            row++;
-            for (int i = 0; i < colMetas.size(); i++) {
-                ColumnMeta colMeta = colMetas.get(i);
-                if (!columns.contains(colMeta.field)) continue;
-                String colVal = buildColumnValue(colMeta, record);
-                if (i == 0) {
-                    String vid = table + "_" + colVal.substring(1,colVal.length()-1); // 生成VID
-
-                    sb.append("\"").append(vid).append("\"").append(":");
-                    sb.append("(").append(colVal);
+    // 估算record在所有表的insert语句中占用的字节数
+    private long estimateBytes(Record record) {
+        return (long) (record.getByteSize() + Constants.ROW_OVERHEAD_BYTES) * tables.size();
+    }
+
+    // 同步模式下直接写入 流水线模式下提交给写入线程(队列满时阻塞)
+    private int flush(Session session, WriteWorker worker, List<Record> recordBuffer) throws Exception {
+        if (worker == null) {
+            return writeBuffer(session, recordBuffer);
+        }
+        // 熔断期间暂停接收新的批次 启用spool时由写入线程直接缓冲到磁盘
+        if (spool == null) {
+            circuitBreaker.awaitClosed();
+        }
+        worker.submit(recordBuffer);
+        return 0;
+    }
+
+    // 启用spool时 集群不可用的批次缓冲到磁盘 返回0 待集群恢复后按顺序重放
+    private int writeBuffer(Session session, List<Record> recordBuffer) throws Exception {
+        if (spool == null) {
+            return writeOrIsolate(session, recordBuffer);
+        }
+        // 先写入缓冲中更早的批次 保证同一个点/边的写入顺序
+        if (!circuitBreaker.isOpen() && drainSpool(session)) {
+            try {
+                return writeOrIsolate(session, recordBuffer);
+            } catch (Exception e) {
+                if (!ErrorClassifier.isRetryable(e)) {
+                    throw e;
                 }
-                else sb.append(",").append(colVal);
+                LOG.warn("Spool batch of " + recordBuffer.size() + " records, due to error: " + e.getMessage());
             }
-            if (row == recordBuffer.size()) sb.append(")");
-            else sb.append("),");
         }
-        String nGql = sb.toString();
-        return executeUpdate(conn, nGql);
+        spool.append(recordBuffer);
+        metrics.spooledRows.add(recordBuffer.size());
+        return 0;
     }
 
-    // EDGE_TYPE的写入nGQL的具体实现
-    public int writeBatchToEdgeTypeBynGQL(Connection conn, String table, List<Record> recordBuffer, int edgeNo) throws Exception {
-        List<ColumnMeta> colMetas = this.columnMetas.get(table);
-        JSONObject edgeType = this.edgeTypes.get(edgeNo);
-        // 利用StringBuilder拼接insert语句
-        StringBuilder sb = new StringBuilder();
-        // 起始id 终点id 以及rank 查一下nebula中如何写的这部分insert语句 源数据库端需要遵守约定
-        // 拼接sb生成insert nGql语句 (字段部分)
-        sb.append("INSERT EDGE ").append(table).append(" ")
-                .append(colMetas.stream().filter(colMeta -> columns.contains(colMeta.field))
-                        .map(colMeta -> {return colMeta.field;})
-                        .collect(Collectors.joining(",","(",")")))
-                .append(" VALUES ");
-
-        // values 部分
-        // insert边语句格式:
-        // insert edge follow(degree) values "player100"->"player101"@rank:(val)
-        // 规定: 第一列和第二列字段是src_id和dst_id 起点主键和终点主键
-        // 采用的insert批量插入
-        // TODO: 此版本暂时不支持rank 后续待开发
-        int row = 0;
-
-        // 构造srcVid/dstVid ColumnMeta
-        ColumnMeta srcVidCol = new ColumnMeta();
-        srcVidCol.field = edgeType.get("srcPrimaryKey").toString();
-        ColumnMeta dstVidCol = new ColumnMeta();
-        dstVidCol.field = edgeType.get("dstPrimaryKey").toString();
-
-        for (Record record : recordBuffer) {
-            row++;
-            String srcVidKey = buildColumnValue(srcVidCol, record);
-            String dstVidKey = buildColumnValue(dstVidCol, record);
-            // 生成dstVid和srcVid
-            String srcVid = edgeType.get("srcTag") + "_" + srcVidKey.substring(1,srcVidKey.length()-1);
-            String dstVid = edgeType.get("dstTag") + "_" + dstVidKey.substring(1,dstVidKey.length()-1);
-            sb.append("\"").append(srcVid).append("\"");
-            sb.append("->").append("\"").append(dstVid).append("\"");
-            sb.append(":");
-            sb.append("(");
-            for (int i = 0; i < colMetas.size(); i++) {
-                ColumnMeta colMeta = colMetas.get(i);
-                if (!columns.contains(colMeta.field)) continue;
-                String colVal = buildColumnValue(colMeta, record);
-                if (i == 0) sb.append(colVal);
-                else sb.append(",").append(colVal);
+    // 按写入顺序重放缓冲的批次 写入成功后提交 集群仍不可用时返回false
+    private boolean drainSpool(Session session) throws Exception {
+        if (spooledBatches() == 0) {
+            return true;
+        }
+        synchronized (spoolLock) {
+            for (BatchSpool batchSpool : spools) {
+                // 逐个读取批次 第一次遇到集群异常即停止 不读取之后的批次
+                try (BatchSpool.Pending pending = batchSpool.pending()) {
+                    BatchSpool.Batch batch;
+                    while ((batch = pending.next()) != null) {
+                        int rows;
+                        try {
+                            rows = writeOrIsolate(session, batch.records);
+                        } catch (Exception e) {
+                            if (!ErrorClassifier.isRetryable(e)) {
+                                throw e;
+                            }
+                            LOG.warn("Graph service is still unavailable, " + spooledBatches()
+                                    + " batches remain spooled.");
+                            return false;
+                        }
+                        metrics.replayedRows.add(rows);
+                        if (batch.previousRun) {
+                            previousRunDirtyRows.add(batch.records.size() - rows);
+                        } else {
+                            respooledRows.add(rows);
+                        }
+                        batchSpool.commit(batch);
+                    }
+                }
             }
-            if (row == recordBuffer.size()) sb.append(")");
-            else sb.append("),");
         }
+        return true;
+    }
 
-        String nGql = sb.toString();
-        return executeUpdate(conn, nGql);
+    // 所有缓冲中未提交的批次数
+    private int spooledBatches() {
+        int size = 0;
+        for (BatchSpool batchSpool : spools) {
+            size += batchSpool.size();
+        }
+        return size;
     }
 
-    // 创建字段值 根据record中的值进行匹配
-    private String buildColumnValue(ColumnMeta colMeta, Record record) throws Exception {
-        Column column = record.getColumn(indexOf(colMeta.field));
-        Column.Type type = column.getType();
-        switch (type) {
-            // 待定
-            case DATE:
-                String val = column.asString();
-                if (colMeta.type.equals("date")) {
-                    return "date(" + "\"" + val + "\"" + ")";
-                } else if (colMeta.type.equals("time")) {
-                    return "time(" + "\"" + val + "\"" + ")";
-                } else if (colMeta.type.equals("datetime")) {
-                    return "datetime(" + "\"" + val + "\"" + ")";
-                } else {
-                    return "\"" + val + "\"";
+    // 批量写入 集群异常退避重试 数据异常时二分定位脏数据
+    private int writeOrIsolate(Session session, List<Record> recordBuffer) throws Exception {
+        WriteWorker.BatchConsumer writer = batch -> retryExecutor.execute(b -> writeBatch(session, b), batch);
+        try {
+            long start = System.nanoTime();
+            int affectedRows = writer.accept(recordBuffer);
+            batchController.onSuccess(recordBuffer.size(), System.nanoTime() - start);
+            return affectedRows;
+        } catch (Exception e) {
+            if (ErrorClassifier.isRetryable(e)) {
+                // 重试耗尽 不是脏数据
+                batchController.onFailure();
+                throw e;
+            }
+            // 脏数据处理
+            LOG.warn("Bisect batch of " + recordBuffer.size() + " records, due to error: " + e.getMessage());
+            DirtyRecordIsolator isolator = new DirtyRecordIsolator(writer, (record, cause) -> {
+                metrics.dirtyRows.increment();
+                // 多个写入线程共享同一个collector
+                synchronized (taskPluginCollector) {
+                    this.taskPluginCollector.collectDirtyRecord(record, cause);
                 }
-            case BYTES:
-            case STRING:
-                String value = column.asString();
-                return "\"" + value + "\"";
-            case NULL:
-            case BAD:
-                return "NULL";
-            case BOOL:
-            case DOUBLE:
-            case INT:
-            case LONG:
-                return column.asString();
+            });
+            try {
+                return isolator.isolate(recordBuffer, e);
+            } finally {
+                metrics.bisectSplits.add(isolator.getSplits());
+            }
+        }
+    }
+
+    // write写入方法的逻辑实现
+    public int writeBatch(Session session, List<Record> recordBuffer) throws Exception {
+        if (combineStatements && tables.size() > 1) {
+            try {
+                return writeBatchCombined(session, recordBuffer);
+            } catch (Exception e) {
+                if (ErrorClassifier.isRetryable(e)) {
+                    throw e;
+                }
+                // 合并请求失败时逐表重新写入 以确定失败的表(insert为覆盖写 已写入的表重复写入无影响)
+                LOG.warn("Combined statement of " + tables + " failed, write table by table, due to error: "
+                        + e.getMessage());
+            }
+        }
+        if (tableExecutor != null && sessionPool != null) {
+            return writeBatchConcurrently(session, recordBuffer);
+        }
+        // 遍历配置文件中待同步的table 根据表类型分别对应写入nGQL语句
+        for (String table : tables) {
+            writeTable(session, table, recordBuffer);
+        }
+        // 返回写入成功的record数 即所有表均已写入的record
+        return recordBuffer.size();
+    }
+
+    // 返回该表写入的行数(去重后)
+    private int writeTable(Session session, String table, List<Record> recordBuffer) throws Exception {
+        TableMeta tableMeta = tableMetas.get(table);
+        switch (tableMeta.tableType) {
+            case TAG:
+                return writeBatchToTagBynGQL(session, table, recordBuffer);
+            case EDGE_TYPE:
+                return writeBatchToEdgeTypeBynGQL(session, table, recordBuffer);
             default:
-                throw new Exception("Invalid column type: " + type);
+                return 0;
         }
     }
 
-    // insert语句的包装方法
-    private int executeUpdate(Connection conn, String nGql) throws SQLException {
-        int cnt;
-        try (Statement stmt = conn.createStatement()) {
-            LOG.debug(">>>" + nGql);
-            cnt = stmt.executeUpdate(nGql);
-        }
-        // TODO: cnt
-        return cnt;
+    // 各表的insert互不依赖 第一个表在当前线程写入 其余表在各自的会话上并发写入
+    // 全部完成后才返回 批次耗时取决于最慢的表而不是各表之和; 多个表失败时逐表报告
+    private int writeBatchConcurrently(Session session, List<Record> recordBuffer) throws Exception {
+        Session[] sessions = tableSessions.computeIfAbsent(session, primary -> {
+            Session[] perTable = new Session[tables.size()];
+            perTable[0] = primary;
+            for (int i = 1; i < perTable.length; i++) {
+                perTable[i] = sessionPool.borrowSession();
+            }
+            return perTable;
+        });
+        List<Future<Integer>> futures = new ArrayList<>(tables.size() - 1);
+        for (int i = 1; i < tables.size(); i++) {
+            Session tableSession = sessions[i];
+            String table = tables.get(i);
+            futures.add(tableExecutor.submit(() -> writeTable(tableSession, table, recordBuffer)));
+        }
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        try {
+            writeTable(session, tables.get(0), recordBuffer);
+        } catch (Exception e) {
+            failures.put(tables.get(0), e);
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                failures.put(tables.get(i + 1), e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+        }
+        if (failures.size() == 1) {
+            throw failures.values().iterator().next();
+        }
+        if (!failures.isEmpty()) {
+            throw tableFailures(failures);
+        }
+        return recordBuffer.size();
     }
 
-    private Session getSession() throws UnknownHostException, IOErrorException, AuthFailedException, ClientServerIncompatibleException, NotValidConnectionException, UnsupportedEncodingException {
-        // 利用nebula-java连接nebulaGraph
-        NebulaPoolConfig nebulaPoolConfig = new NebulaPoolConfig();
-        nebulaPoolConfig.setMaxConnSize(10);
-        List<HostAddress> addresses = Arrays.asList(new HostAddress("127.0.0.1", 9669));
-        NebulaPool pool = new NebulaPool();
-        pool.init(addresses, nebulaPoolConfig);
-        Session session = pool.getSession("root", "nebula", false);
-        // 使用哪个图空间需要指定
-        // 可以从jdbcUrl中截取 jdbc:nebula://cba
-        session.execute("use cba"); // throws声明了Exception是否还需要try-catch处理
-        return session;
+    // 全部为集群异常时可重试 否则按数据异常处理
+    private static DataXException tableFailures(Map<String, Exception> failures) {
+        boolean retryable = true;
+        StringBuilder message = new StringBuilder("Failed to write " + failures.size() + " tables:");
+        for (Map.Entry<String, Exception> failure : failures.entrySet()) {
+            retryable &= ErrorClassifier.isRetryable(failure.getValue());
+            message.append(" [").append(failure.getKey()).append("] ").append(failure.getValue().getMessage());
+        }
+        // 传入DataXException作为cause时会原样返回该异常 因此各表的异常均作为suppressed附加
+        DataXException error = DataXException.asDataXException(retryable
+                ? NebulaGraphWriterErrorCode.RETRYABLE_EXCEPTION : NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                message.toString());
+        for (Exception failure : failures.values()) {
+            error.addSuppressed(failure);
+        }
+        return error;
+    }
+
+    // 所有表的insert语句以分号连接 一次请求写入
+    // insert vertex player(...) values ...; insert edge follow(...) values ...
+    private int writeBatchCombined(Session session, List<Record> recordBuffer) throws Exception {
+        StatementBuilder sb = StatementBuilder.local();
+        Map<String, Object> params = parameterized ? new HashMap<>() : null;
+        int[] rows = new int[tables.size()];
+        long[] bytes = new long[tables.size()];
+        long start = System.nanoTime();
+        for (int i = 0; i < tables.size(); i++) {
+            if (i > 0) sb.append(';');
+            int length = sb.length();
+            rows[i] = appendInsert(sb, params, writePlans().get(tables.get(i)), recordBuffer);
+            bytes[i] = sb.length() - length;
+        }
+        metrics.buildNanos.add(System.nanoTime() - start);
+        executeUpdate(session, sb.toString(), params, tables.toString(), metrics.combined());
+        for (int i = 0; i < tables.size(); i++) {
+            WriterMetrics.TableStats stats = metrics.table(tables.get(i));
+            stats.rows.add(rows[i]);
+            stats.bytes.add(bytes[i]);
+        }
+        return recordBuffer.size();
     }
 
-    private int indexOf(String colName) throws DataXException {
-        for (int i = 0; i < columns.size(); i++) {
-            if (columns.get(i).equals(colName))
-                return i;
+    // TAG的写入nGQL的具体实现
+    // insert vertex player(name, age) values "player_Lim Kee":("Lim Kee", 23)
+    // VID由于要求是整个图空间中唯一 并且其并非是节点的标签 其属于独立于标签属性的唯一标识属性
+    // 因此我们采取table+主键的形式生成VID 如有需求则需要在配置文件中指定VID的长度 也就是FIXED_STRING(N)
+    // 中N的大小
+    public int writeBatchToTagBynGQL(Session session, String table, List<Record> recordBuffer) throws Exception {
+        // 利用当前线程复用的StatementBuilder拼接insert语句
+        return writeStatement(session, table, recordBuffer);
+    }
+
+    // EDGE_TYPE的写入nGQL的具体实现
+    // insert edge follow(degree) values "player_a"->"player_b"@rank:(val)
+    // 起点和终点VID由edgeType中配置的srcTag/dstTag与srcPrimaryKey/dstPrimaryKey生成 rank取自rankKey列 未配置时为0
+    public int writeBatchToEdgeTypeBynGQL(Session session, String table, List<Record> recordBuffer) throws Exception {
+        return writeStatement(session, table, recordBuffer);
+    }
+
+    // 构建并执行一个表的insert语句 返回写入的行数
+    private int writeStatement(Session session, String table, List<Record> recordBuffer) throws Exception {
+        StatementBuilder sb = StatementBuilder.local();
+        Map<String, Object> params = parameterized ? new HashMap<>() : null;
+        long start = System.nanoTime();
+        int rows = appendInsert(sb, params, writePlans().get(table), recordBuffer);
+        metrics.buildNanos.add(System.nanoTime() - start);
+        executeUpdate(session, sb.toString(), params, table, metrics.table(table));
+        WriterMetrics.TableStats stats = metrics.table(table);
+        stats.rows.add(rows);
+        stats.bytes.add(sb.length());
+        return rows;
+    }
+
+    // 返回语句中的行数 params不为null时以参数化语句写入
+    private int appendInsert(StatementBuilder sb, Map<String, Object> params, WritePlan plan,
+                             List<Record> recordBuffer) {
+        int count = recordBuffer.size();
+        int[] rows = null;
+        if (deduplicate) {
+            // 同一个点/边在批次内只写最后一次出现的值
+            VidDeduplicator deduplicator = VidDeduplicator.local();
+            count = deduplicator.dedupe(plan, recordBuffer);
+            rows = deduplicator.rows();
+            metrics.dedupedRows.add(recordBuffer.size() - count);
+        }
+        if (params != null) {
+            parameterizedInserts.get(plan.table).bind(sb, params, recordBuffer, rows, count);
+            return count;
+        }
+        sb.append(plan.header);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            appendRow(sb, plan, recordBuffer.get(rows == null ? i : rows[i]));
+        }
+        return count;
+    }
+
+    private void appendRow(StatementBuilder sb, WritePlan plan, Record record) {
+        if (plan.tableType == TableType.TAG) {
+            plan.appendVertex(sb, record);
+        } else {
+            plan.appendEdge(sb, record);
+        }
+    }
+
+    // insert语句的包装方法
+    // graphd不返回insert的影响行数 执行成功即语句中的行全部写入
+    // 执行耗时记录到stats中
+    private void executeUpdate(Session session, String nGql, Map<String, Object> params, String target,
+                               WriterMetrics.TableStats stats) throws Exception {
+        LOG.debug(">>>" + nGql);
+        long start = System.nanoTime();
+        ResultSet rs = params == null ? session.execute(nGql) : session.executeWithParameter(nGql, params);
+        stats.executeLatency.record(System.nanoTime() - start);
+        if (!rs.isSucceeded()) {
+            NebulaGraphWriterErrorCode errorCode = ErrorClassifier.isRetryable(rs.getErrorCode(), rs.getErrorMessage())
+                    ? NebulaGraphWriterErrorCode.RETRYABLE_EXCEPTION : NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION;
+            throw DataXException.asDataXException(errorCode,
+                    "Failed to write " + target + ", error code: " + rs.getErrorCode() + ", message: " + rs.getErrorMessage());
         }
-        throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
-                "Cannot find col: " + colName + " in columns: " + columns);
     }
 }
@@ -0,0 +1,58 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * 二分定位脏数据
+ * 批次写入失败后将其对半拆分分别重试, 成功的一半直接写入, 失败的一半继续拆分, 直到定位到单条脏数据;
+ * 批次中有k条脏数据时约需O(k·log n)次写入, 而不是逐行重写的n次; 可重试的集群异常不属于脏数据, 直接抛出
+ */
+public class DirtyRecordIsolator {
+    private static final Logger LOG = LoggerFactory.getLogger(DirtyRecordIsolator.class);
+
+    // 脏数据的收集逻辑 由DataHandler提供
+    public interface DirtyRecordCollector {
+        void collect(Record record, Exception cause);
+    }
+
+    private final WriteWorker.BatchConsumer writer;
+    private final DirtyRecordCollector collector;
+    private int splits;
+
+    public DirtyRecordIsolator(WriteWorker.BatchConsumer writer, DirtyRecordCollector collector) {
+        this.writer = writer;
+        this.collector = collector;
+    }
+
+    // 写入一个已经失败的批次 返回写入成功的行数
+    public int isolate(List<Record> failedBatch, Exception cause) throws Exception {
+        if (failedBatch.size() == 1) {
+            LOG.error(cause.getMessage(), cause);
+            collector.collect(failedBatch.get(0), cause);
+            return 0;
+        }
+        splits++;
+        int mid = failedBatch.size() >>> 1;
+        return retry(failedBatch.subList(0, mid)) + retry(failedBatch.subList(mid, failedBatch.size()));
+    }
+
+    // 拆分的次数
+    public int getSplits() {
+        return splits;
+    }
+
+    private int retry(List<Record> half) throws Exception {
+        try {
+            return writer.accept(half);
+        } catch (Exception e) {
+            if (ErrorClassifier.isRetryable(e)) {
+                throw e;
+            }
+            return isolate(half, e);
+        }
+    }
+}
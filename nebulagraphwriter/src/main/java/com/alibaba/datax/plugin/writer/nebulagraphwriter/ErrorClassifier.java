@@ -0,0 +1,76 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.exception.DataXException;
+import com.vesoft.nebula.ErrorCode;
+import com.vesoft.nebula.client.graph.exception.IOErrorException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 写入异常分类
+ * 根据错误码及异常类型区分可重试的集群异常(连接断开、RPC失败、leader切换等)与数据异常(语法、类型、VID长度等),
+ * 只有数据异常才需要定位脏数据. graphd包装为E_EXECUTION_ERROR的storaged错误按已知的错误信息区分
+ */
+public class ErrorClassifier {
+
+    private static final Set<ErrorCode> RETRYABLE_CODES = EnumSet.of(
+            ErrorCode.E_DISCONNECTED, ErrorCode.E_FAIL_TO_CONNECT, ErrorCode.E_RPC_FAILURE,
+            ErrorCode.E_LEADER_CHANGED, ErrorCode.E_PART_NOT_FOUND, ErrorCode.E_SESSION_TIMEOUT,
+            ErrorCode.E_TOO_MANY_CONNECTIONS, ErrorCode.E_NO_HOSTS, ErrorCode.E_WRITE_STALLED,
+            ErrorCode.E_RAFT_TOO_MANY_REQUESTS, ErrorCode.E_RAFT_NOT_READY, ErrorCode.E_RAFT_WRITE_BLOCKED,
+            ErrorCode.E_RAFT_BUFFER_OVERFLOW, ErrorCode.E_CONSENSUS_ERROR, ErrorCode.E_LEADER_LEASE_FAILED);
+
+    // graphd把INSERT时storaged返回的错误统一包装为E_EXECUTION_ERROR, 客户端拿不到storaged的错误码,
+    // 只能按graphd生成的错误信息识别: 常见的错误为固定文本, 其余为"Storage Error: part: 1, error: E_XXX(-3)."
+    private static final String STORAGE_ERROR_PREFIX = "Storage Error:";
+    private static final String[] RETRYABLE_STORAGE_ERRORS = {
+            "The leader has changed", "RPC failure", "timeout", "timed out", "Part not found"};
+
+    private ErrorClassifier() {
+    }
+
+    // 根据graphd返回的错误码判断 E_EXECUTION_ERROR再根据包装的storaged错误判断
+    public static boolean isRetryable(int errorCode, String errorMessage) {
+        ErrorCode code = ErrorCode.findByValue(errorCode);
+        if (code == ErrorCode.E_EXECUTION_ERROR) {
+            return isRetryableStorageError(errorMessage);
+        }
+        return code != null && RETRYABLE_CODES.contains(code);
+    }
+
+    static boolean isRetryableStorageError(String errorMessage) {
+        if (errorMessage == null || !errorMessage.startsWith(STORAGE_ERROR_PREFIX)) {
+            return false;
+        }
+        String message = errorMessage.toLowerCase();
+        for (String error : RETRYABLE_STORAGE_ERRORS) {
+            if (message.contains(error.toLowerCase())) {
+                return true;
+            }
+        }
+        for (ErrorCode code : RETRYABLE_CODES) {
+            if (errorMessage.contains(code.name() + "(")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 根据写入时抛出的异常判断
+    public static boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOErrorException) {
+                return true;
+            }
+            if (cause instanceof DataXException
+                    && ((DataXException) cause).getErrorCode() == NebulaGraphWriterErrorCode.RETRYABLE_EXCEPTION) {
+                return true;
+            }
+            if (cause == cause.getCause()) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,173 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.vesoft.nebula.client.graph.data.HostAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * 多个graphd之间的负载均衡
+ * 每个graphd记录语句执行耗时的指数移动平均(EWMA)与当前持有的会话数, 新会话选择
+ * EWMA * (会话数 + 1) 最小的可用graphd; 连续errorThreshold次连接异常或可重试错误的graphd被摘除ejectMillis,
+ * 到期后重新参与选择, 所有graphd均被摘除时选择最早到期的一个
+ */
+public class GraphHostBalancer {
+    private static final Logger LOG = LoggerFactory.getLogger(GraphHostBalancer.class);
+
+    // EWMA的平滑系数
+    private static final double ALPHA = 0.2;
+    // 当前graphd的得分超过最优graphd的该倍数时 会话迁移到最优graphd
+    private static final double MOVE_RATIO = 2.0;
+
+    static class HostStats {
+        final HostAddress address;
+        double ewmaNanos;
+        int sessions;
+        int consecutiveErrors;
+        long ejectedUntil;
+
+        HostStats(HostAddress address) {
+            this.address = address;
+        }
+
+        // 尚无耗时样本的graphd按1ms计算 优先获得会话
+        double score() {
+            return (ewmaNanos > 0 ? ewmaNanos : 1_000_000d) * (sessions + 1);
+        }
+    }
+
+    private final Map<String, HostStats> hosts = new LinkedHashMap<>();
+    private final int errorThreshold;
+    private final long ejectMillis;
+    private final LongSupplier clock;
+
+    public GraphHostBalancer(List<HostAddress> addresses, int errorThreshold, long ejectMillis) {
+        this(addresses, errorThreshold, ejectMillis, System::currentTimeMillis);
+    }
+
+    GraphHostBalancer(List<HostAddress> addresses, int errorThreshold, long ejectMillis, LongSupplier clock) {
+        for (HostAddress address : addresses) {
+            hosts.put(address.toString(), new HostStats(address));
+        }
+        this.errorThreshold = Math.max(1, errorThreshold);
+        this.ejectMillis = ejectMillis;
+        this.clock = clock;
+    }
+
+    // 为新会话选择graphd 并计入该graphd的会话数
+    public synchronized HostAddress acquire() {
+        HostStats chosen = choose();
+        chosen.sessions++;
+        return chosen.address;
+    }
+
+    // 会话迁移到指定的graphd后调用
+    public synchronized void retain(HostAddress address) {
+        HostStats stats = stats(address);
+        if (stats != null) {
+            stats.sessions++;
+        }
+    }
+
+    // 会话关闭或迁移后调用
+    public synchronized void release(HostAddress address) {
+        HostStats stats = stats(address);
+        if (stats != null && stats.sessions > 0) {
+            stats.sessions--;
+        }
+    }
+
+    // 当前graphd被摘除 或其得分明显差于最优graphd时 返回应迁移到的graphd 否则返回null; 会话数由调用方在迁移后更新
+    public synchronized HostAddress relocate(HostAddress current) {
+        HostStats stats = stats(current);
+        if (stats == null) {
+            return null;
+        }
+        HostStats best = choose();
+        if (best == stats || isEjected(best)) {
+            return null;
+        }
+        // 留在当前graphd时的得分 会话自身已计入会话数
+        double stayScore = (stats.ewmaNanos > 0 ? stats.ewmaNanos : 1_000_000d) * stats.sessions;
+        if (!isEjected(stats) && stayScore <= best.score() * MOVE_RATIO) {
+            return null;
+        }
+        return best.address;
+    }
+
+    public synchronized void onSuccess(HostAddress address, long latencyNanos) {
+        HostStats stats = stats(address);
+        if (stats == null) {
+            return;
+        }
+        stats.ewmaNanos = stats.ewmaNanos > 0 ? stats.ewmaNanos + ALPHA * (latencyNanos - stats.ewmaNanos)
+                : latencyNanos;
+        if (stats.consecutiveErrors >= errorThreshold) {
+            LOG.info("Graphd " + address + " recovered.");
+        }
+        stats.consecutiveErrors = 0;
+        stats.ejectedUntil = 0;
+    }
+
+    public synchronized void onFailure(HostAddress address) {
+        HostStats stats = stats(address);
+        if (stats == null) {
+            return;
+        }
+        if (++stats.consecutiveErrors >= errorThreshold) {
+            if (!isEjected(stats)) {
+                LOG.warn("Eject graphd " + address + " for " + ejectMillis + "ms after " + stats.consecutiveErrors
+                        + " consecutive failures.");
+            }
+            stats.ejectedUntil = clock.getAsLong() + ejectMillis;
+        }
+    }
+
+    public synchronized boolean isEjected(HostAddress address) {
+        HostStats stats = stats(address);
+        return stats != null && isEjected(stats);
+    }
+
+    public synchronized List<HostAddress> getAddresses() {
+        List<HostAddress> addresses = new ArrayList<>(hosts.size());
+        for (HostStats stats : hosts.values()) {
+            addresses.add(stats.address);
+        }
+        return addresses;
+    }
+
+    // 选择得分最小的可用graphd 得分相同时随机选择
+    private HostStats choose() {
+        HostStats best = null, earliest = null;
+        int ties = 0;
+        for (HostStats stats : hosts.values()) {
+            if (isEjected(stats)) {
+                if (earliest == null || stats.ejectedUntil < earliest.ejectedUntil) {
+                    earliest = stats;
+                }
+                continue;
+            }
+            if (best == null || stats.score() < best.score()) {
+                best = stats;
+                ties = 1;
+            } else if (stats.score() == best.score() && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                best = stats;
+            }
+        }
+        return best != null ? best : earliest;
+    }
+
+    private boolean isEjected(HostStats stats) {
+        return stats.ejectedUntil > clock.getAsLong();
+    }
+
+    private HostStats stats(HostAddress address) {
+        return address == null ? null : hosts.get(address.toString());
+    }
+}
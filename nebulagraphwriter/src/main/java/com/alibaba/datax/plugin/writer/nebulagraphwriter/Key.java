@@ -5,9 +5,68 @@ public class Key {
     public static final String PASSWORD = "password";
     public static final String JDBC_URL = "jdbcUrl";
     public static final String CONNECTION = "connection";
+    public static final String GRAPH_ADDRESS = "graphAddress";
+    public static final String MAX_CONN_SIZE = "maxConnSize";
     public static final String TABLE = "table";
     public static final String BATCH_SIZE = "batchSize";
     public static final String COLUMN = "column";
 
     public static final String EDGE_TYPE = "edgeType";
+
+    // Job加载后下发给Task的元信息
+    public static final String SCHEMA = "schema";
+
+    // 异步流水线写入
+    public static final String PIPELINED = "pipelined";
+    public static final String MAX_IN_FLIGHT_BATCHES = "maxInFlightBatches";
+    public static final String WRITE_THREADS = "writeThreads";
+    // 一个批次所有表的insert语句合并为一次请求
+    public static final String COMBINE_STATEMENTS = "combineStatements";
+    // 一个批次的各表insert在不同会话上并发执行
+    public static final String CONCURRENT_TABLES = "concurrentTables";
+    // 批次内按VID去重
+    public static final String DEDUPLICATE = "deduplicate";
+
+    // 按VID所在的分片组织批次 分片数由Job从DESCRIBE SPACE中读取
+    public static final String PARTITION_GROUPING = "partitionGrouping";
+    public static final String PARTITION_NUM = "partitionNum";
+    public static final String PARTITION_BUFFER_SIZE = "partitionBufferSize";
+
+    // graphd不可用时批次暂存的本地目录
+    public static final String SPOOL_DIR = "spoolDir";
+    public static final String SPOOL_SEGMENT_BYTES = "spoolSegmentBytes";
+    // 由Job下发 上次运行的Task数更多时遗留的缓冲目录 由当前Task一并重放
+    public static final String SPOOL_ADOPTED_DIRS = "spoolAdoptedDirs";
+
+    // 写入方式: ngql(默认)通过graphd写入 sst生成SST文件
+    public static final String WRITE_MODE = "writeMode";
+    public static final String SST_DIR = "sstDir";
+    public static final String SST_BUFFER_BYTES = "sstBufferBytes";
+    public static final String META_ADDRESS = "metaAddress";
+    // 由Job加载后下发给Task
+    public static final String VID_LENGTH = "vidLength";
+    public static final String TASK_INDEX = "taskIndex";
+
+    // VID生成策略
+    public static final String VID_TYPE = "vidType";
+    public static final String VID_TEMPLATE = "vidTemplate";
+
+    // 写入指标汇总日志的输出间隔
+    public static final String METRICS_INTERVAL_SEC = "metricsIntervalSec";
+
+    // 批次大小控制
+    public static final String BATCH_BYTE_SIZE = "batchByteSize";
+    public static final String ADAPTIVE_BATCH = "adaptiveBatch";
+    public static final String MAX_BATCH_SIZE = "maxBatchSize";
+    public static final String TARGET_LATENCY_MS = "targetLatencyMs";
+
+    // 集群异常重试与熔断
+    public static final String MAX_RETRIES = "maxRetries";
+    public static final String RETRY_BACKOFF_MS = "retryBackoffMs";
+    public static final String MAX_RETRY_BACKOFF_MS = "maxRetryBackoffMs";
+    public static final String CIRCUIT_BREAKER_THRESHOLD = "circuitBreakerThreshold";
+    public static final String CIRCUIT_BREAKER_OPEN_MS = "circuitBreakerOpenMs";
+    // 多个graphd的负载均衡与摘除
+    public static final String HOST_ERROR_THRESHOLD = "hostErrorThreshold";
+    public static final String HOST_EJECT_MS = "hostEjectMs";
 }
@@ -5,12 +5,21 @@ import com.alibaba.datax.common.plugin.RecordReceiver;
 import com.alibaba.datax.common.plugin.TaskPluginCollector;
 import com.alibaba.datax.common.spi.Writer;
 import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.fastjson.JSONObject;
+import com.facebook.thrift.TException;
+import com.vesoft.nebula.client.graph.exception.ClientServerIncompatibleException;
+import com.vesoft.nebula.client.graph.net.Session;
+import com.vesoft.nebula.client.meta.MetaClient;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class NebulaGraphWriter extends Writer {
     /*
@@ -22,6 +31,7 @@ public class NebulaGraphWriter extends Writer {
 
     public static class Job extends Writer.Job {
         private Configuration originalConfig;
+        private NebulaSessionPool sessionPool;
         private static final Logger LOG = LoggerFactory.getLogger(Job.class);
 
         @Override
@@ -52,19 +62,104 @@ public class NebulaGraphWriter extends Writer {
                 throw DataXException.asDataXException(NebulaGraphWriterErrorCode.REQUIRED_VALUE,
                         "Parameter [" + Key.CONNECTION + "] is not set");
             }
+            // 多个graphd应配置在同一个connection的graphAddress中 会话按耗时和错误在其间均衡
             if (connection.size() > 1)
-                LOG.warn("Connection size is " + connection.size() + " and only connection[0] will be used");
+                LOG.warn("Connection size is " + connection.size() + " and only connection[0] will be used, "
+                        + "list all graphd hosts in " + Key.GRAPH_ADDRESS + " of connection[0] instead");
             Configuration conn = Configuration.from(connection.get(0).toString());
             String jdbcUrl = conn.getString(Key.JDBC_URL);
             // check jdbcUrl
             if (StringUtils.isBlank(jdbcUrl))
                 throw DataXException.asDataXException(NebulaGraphWriterErrorCode.REQUIRED_VALUE,
                         "Parameter [" + Key.JDBC_URL + "] of connection is not set");
+            // check graphAddress 未配置时默认为127.0.0.1:9669
+            List<String> graphAddress = conn.getList(Key.GRAPH_ADDRESS, String.class);
+            if (graphAddress != null) {
+                NebulaSessionPool.parseAddresses(graphAddress);
+            }
+            // check vidType and vidTemplate
+            VidStrategy.fromConfiguration(this.originalConfig);
+            // check writeMode
+            String writeMode = this.originalConfig.getString(Key.WRITE_MODE, Constants.WRITE_MODE_NGQL);
+            if (Constants.WRITE_MODE_SST.equalsIgnoreCase(writeMode)) {
+                for (String key : new String[]{Key.SST_DIR, Key.META_ADDRESS}) {
+                    if (this.originalConfig.get(key) == null) {
+                        throw DataXException.asDataXException(NebulaGraphWriterErrorCode.REQUIRED_VALUE,
+                                "Parameter [" + key + "] is not set, which is required in sst mode");
+                    }
+                }
+            } else if (Constants.WRITE_MODE_PARAMETERIZED.equalsIgnoreCase(writeMode)) {
+                // nGQL中rank只能是整数字面量 配置了rankKey的边不能参数化写入
+                List<JSONObject> edgeTypes = conn.getList(Key.EDGE_TYPE, JSONObject.class);
+                for (int i = 0; edgeTypes != null && i < edgeTypes.size(); i++) {
+                    if (edgeTypes.get(i).getString("rankKey") != null) {
+                        throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                                "Parameter [rankKey] of " + Key.EDGE_TYPE + "[" + i + "] is not supported in "
+                                        + "parameterized mode, use ngql instead");
+                    }
+                }
+            } else if (!Constants.WRITE_MODE_NGQL.equalsIgnoreCase(writeMode)
+                    && !Constants.WRITE_MODE_PARAMETERIZED.equalsIgnoreCase(writeMode)) {
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                        "Parameter [" + Key.WRITE_MODE + "] should be ngql, parameterized or sst, but got " + writeMode);
+            }
         }
 
         @Override
-        public void destroy() {
+        public void prepare() {
+            // 元信息只在Job中加载一次 随split下发给各个Task
+            Configuration conn = Configuration.from(this.originalConfig.getList(Key.CONNECTION).get(0).toString());
+            List<String> tables = conn.getList(Key.TABLE, String.class);
+            List<String> graphAddress = conn.getList(Key.GRAPH_ADDRESS,
+                    Collections.singletonList(Constants.DEFAULT_GRAPH_ADDRESS), String.class);
+            // 同一进程中的Task可以继续复用该连接池 在Job销毁时释放
+            this.sessionPool = NebulaSessionPool.acquire(NebulaSessionPool.parseAddresses(graphAddress),
+                    this.originalConfig.getString(Key.USERNAME), this.originalConfig.getString(Key.PASSWORD),
+                    NebulaSessionPool.parseSpace(conn.getString(Key.JDBC_URL)),
+                    this.originalConfig.getInt(Key.MAX_CONN_SIZE, Constants.DEFAULT_MAX_CONN_SIZE),
+                    this.originalConfig.getInt(Key.HOST_ERROR_THRESHOLD, Constants.DEFAULT_HOST_ERROR_THRESHOLD),
+                    this.originalConfig.getLong(Key.HOST_EJECT_MS, Constants.DEFAULT_HOST_EJECT_MS));
+            Session session = sessionPool.borrowSession();
+            try {
+                SchemaManager schemaManager = new SchemaManager(session);
+                Map<String, TableMeta> tableMetas = schemaManager.loadTableMeta(tables);
+                Map<String, List<ColumnMeta>> columnMetas = schemaManager.loadColumnMeta(tables, tableMetas);
+                SchemaManager.writeToConfiguration(this.originalConfig, tables, tableMetas, columnMetas);
+                LOG.info("Schema of " + tables + " loaded.");
+                String space = NebulaSessionPool.parseSpace(conn.getString(Key.JDBC_URL));
+                boolean sstMode = Constants.WRITE_MODE_SST.equalsIgnoreCase(
+                        this.originalConfig.getString(Key.WRITE_MODE, Constants.WRITE_MODE_NGQL));
+                // 按分片组织批次及SST模式下 分片数同样只读取一次
+                if ((sstMode || this.originalConfig.getBool(Key.PARTITION_GROUPING, false))
+                        && this.originalConfig.getInt(Key.PARTITION_NUM, 0) <= 0) {
+                    this.originalConfig.set(Key.PARTITION_NUM, schemaManager.loadPartitionNum(space));
+                }
+                // SST模式下Task不访问集群 key/value编码所需的VID长度、tag id/edge type和schema版本也由Job加载
+                if (sstMode) {
+                    this.originalConfig.set(Key.VID_LENGTH, schemaManager.loadVidLength(space));
+                    MetaClient metaClient = new MetaClient(NebulaSessionPool.parseAddresses(
+                            this.originalConfig.getList(Key.META_ADDRESS, String.class)));
+                    try {
+                        metaClient.connect();
+                        SchemaManager.loadSchemaIds(metaClient, space, tableMetas);
+                    } finally {
+                        metaClient.close();
+                    }
+                    SchemaManager.writeToConfiguration(this.originalConfig, tables, tableMetas, columnMetas);
+                }
+            } catch (UnknownHostException | TException | ClientServerIncompatibleException e) {
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                        "Failed to connect metad: " + e.getMessage());
+            } finally {
+                sessionPool.returnSession(session);
+            }
+        }
 
+        @Override
+        public void destroy() {
+            if (sessionPool != null) {
+                sessionPool.release();
+            }
         }
 
         @Override
@@ -75,6 +170,13 @@ public class NebulaGraphWriter extends Writer {
 
             // Key中定义的字符串常量
             List<Object> conns = this.originalConfig.getList(Key.CONNECTION);
+            String spoolDir = this.originalConfig.getString(Key.SPOOL_DIR);
+            // 上次运行的Task数更多时遗留的缓冲目录 轮流分配给现有的Task重放
+            List<File> orphanedSpoolDirs = spoolDir == null ? Collections.<File>emptyList()
+                    : BatchSpool.orphanedTaskDirs(new File(spoolDir), mandatoryNumber);
+            if (!orphanedSpoolDirs.isEmpty()) {
+                LOG.info("Spool directories " + orphanedSpoolDirs + " of a previous run are replayed by current tasks.");
+            }
             for (int i = 0; i < mandatoryNumber; i++) {
                 // 对于Task配置Configuration对象 直接拷贝Job中的配置
                 Configuration cloneConfig = this.originalConfig.clone();
@@ -82,9 +184,22 @@ public class NebulaGraphWriter extends Writer {
                 // 此步骤主要是为了去掉json中table和jdbc外部的connection字段
                 // 便于后续可以直接通过Key来访问json字符串
                 cloneConfig.set(Key.JDBC_URL, conf.getString(Key.JDBC_URL));
+                if (conf.getList(Key.GRAPH_ADDRESS) != null) {
+                    cloneConfig.set(Key.GRAPH_ADDRESS, conf.getList(Key.GRAPH_ADDRESS));
+                }
                 cloneConfig.set(Key.TABLE, conf.getList(Key.TABLE));
                 cloneConfig.set(Key.EDGE_TYPE, conf.getList(Key.EDGE_TYPE));
+                cloneConfig.set(Key.TASK_INDEX, i);
                 cloneConfig.remove(Key.CONNECTION);
+                // 每个Task使用独立的缓冲目录 重新运行时同一个Task重放自己的批次
+                if (spoolDir != null) {
+                    cloneConfig.set(Key.SPOOL_DIR, BatchSpool.taskDir(new File(spoolDir), i).getPath());
+                    List<String> adoptedDirs = new ArrayList<>();
+                    for (int j = i; j < orphanedSpoolDirs.size(); j += mandatoryNumber) {
+                        adoptedDirs.add(orphanedSpoolDirs.get(j).getPath());
+                    }
+                    cloneConfig.set(Key.SPOOL_ADOPTED_DIRS, adoptedDirs);
+                }
                 writerSplitConfig.add(cloneConfig);
             }
             return writerSplitConfig;
@@ -95,6 +210,7 @@ public class NebulaGraphWriter extends Writer {
 
         private Configuration writerSliceConfig; // 当前Task的配置信息
         private TaskPluginCollector taskPluginCollector; // 脏数据处理
+        private DataHandler handler;
         private static final Logger LOG = LoggerFactory.getLogger(Task.class);
 
         @Override
@@ -105,7 +221,10 @@ public class NebulaGraphWriter extends Writer {
 
         @Override
         public void destroy() {
-
+            // 释放共享连接池的引用
+            if (handler != null) {
+                handler.close();
+            }
         }
 
         @Override
@@ -114,7 +233,12 @@ public class NebulaGraphWriter extends Writer {
             LOG.debug("Start to handle record from: " + peerPluginName);
 
             // 业务逻辑: DataHandler
-            DataHandler handler = new DefaultDataHandler(this.writerSliceConfig, this.taskPluginCollector);
+            if (Constants.WRITE_MODE_SST.equalsIgnoreCase(
+                    this.writerSliceConfig.getString(Key.WRITE_MODE, Constants.WRITE_MODE_NGQL))) {
+                this.handler = new SstDataHandler(this.writerSliceConfig);
+            } else {
+                this.handler = new DefaultDataHandler(this.writerSliceConfig, this.taskPluginCollector);
+            }
 
             long records = handler.handle(recordReceiver, getTaskPluginCollector());
             LOG.debug("Finish handling data, records: " + records);
@@ -7,7 +7,8 @@ public enum NebulaGraphWriterErrorCode implements ErrorCode {
     REQUIRED_VALUE("NebulaGraphWriter-00", "Parameter value is missing"),
     ILLEGAL_VALUE("NebulaGraphWriter-01", "Invalid parameter value"),
     RUNTIME_EXCEPTION("NebulaGraphWriter-02", "Runtime exception"),
-    TYPE_ERROR("NebulaGraphWriter-03", "Data type mapping error");
+    TYPE_ERROR("NebulaGraphWriter-03", "Data type mapping error"),
+    RETRYABLE_EXCEPTION("NebulaGraphWriter-04", "Retryable cluster exception");
 
     private final String code;
     private final String description;
@@ -0,0 +1,86 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 按NebulaGraph的规则计算VID所在的分片
+ * 长度恰为8字节的VID按小端序直接转换为64位整数, 其他长度的VID使用MurmurHash2(64A, 种子0xc70f6907)计算哈希值,
+ * 分片编号为该值按无符号数对分片数取模再加1; INT64 VID即为其8字节表示, hash()生成的VID即为字符串的哈希值
+ */
+public class NebulaPartitioner {
+
+    private static final long SEED = 0xc70f6907L;
+    private static final long M = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    private final int partitionNum;
+
+    public NebulaPartitioner(int partitionNum) {
+        this.partitionNum = partitionNum;
+    }
+
+    public int getPartitionNum() {
+        return partitionNum;
+    }
+
+    // 字符串VID所在的分片 从1开始编号
+    public int partId(String vid) {
+        byte[] bytes = vid.getBytes(StandardCharsets.UTF_8);
+        long id = bytes.length == 8 ? littleEndian(bytes, 0) : murmurHash64(bytes);
+        return partId(id);
+    }
+
+    // INT64 VID所在的分片
+    public int partId(long vid) {
+        return (int) Long.remainderUnsigned(vid, partitionNum) + 1;
+    }
+
+    // 与graphd的hash()函数结果一致
+    public static long hash(String value) {
+        return murmurHash64(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long murmurHash64(byte[] data) {
+        int len = data.length;
+        long h = SEED ^ (len * M);
+        int blocks = len >>> 3;
+        for (int i = 0; i < blocks; i++) {
+            long k = littleEndian(data, i << 3);
+            k *= M;
+            k ^= k >>> R;
+            k *= M;
+            h ^= k;
+            h *= M;
+        }
+        int tail = blocks << 3;
+        switch (len & 7) {
+            case 7:
+                h ^= (long) (data[tail + 6] & 0xff) << 48;
+            case 6:
+                h ^= (long) (data[tail + 5] & 0xff) << 40;
+            case 5:
+                h ^= (long) (data[tail + 4] & 0xff) << 32;
+            case 4:
+                h ^= (long) (data[tail + 3] & 0xff) << 24;
+            case 3:
+                h ^= (long) (data[tail + 2] & 0xff) << 16;
+            case 2:
+                h ^= (long) (data[tail + 1] & 0xff) << 8;
+            case 1:
+                h ^= data[tail] & 0xff;
+                h *= M;
+        }
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+
+    private static long littleEndian(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
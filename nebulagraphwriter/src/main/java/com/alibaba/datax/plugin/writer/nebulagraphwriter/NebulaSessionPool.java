@@ -0,0 +1,264 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.exception.DataXException;
+import com.vesoft.nebula.client.graph.NebulaPoolConfig;
+import com.vesoft.nebula.client.graph.data.HostAddress;
+import com.vesoft.nebula.client.graph.data.ResultSet;
+import com.vesoft.nebula.client.graph.exception.IOErrorException;
+import com.vesoft.nebula.client.graph.net.NebulaPool;
+import com.vesoft.nebula.client.graph.net.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * JVM内共享的NebulaPool
+ * 同一进程中的所有Task按(graphd地址, 用户名, 图空间, 凭据的摘要)共享连接池, 通过引用计数管理生命周期,
+ * 最后一个使用者释放时关闭连接池; 会话在归还后缓存复用, 借出前做健康检查.
+ * 配置了多个graphd时每个graphd使用独立的NebulaPool, 由GraphHostBalancer按耗时和错误选择会话所在的graphd,
+ * 借出的会话为BalancedSession, 所在graphd被摘除或明显慢于其他graphd时自动迁移
+ */
+public class NebulaSessionPool {
+    private static final Logger LOG = LoggerFactory.getLogger(NebulaSessionPool.class);
+
+    private static final Map<String, NebulaSessionPool> POOLS = new HashMap<>();
+
+    // 在指定的graphd上打开已切换到目标图空间的会话
+    interface SessionFactory {
+        Session open(HostAddress host) throws Exception;
+
+        void close();
+    }
+
+    private final String key;
+    private final List<HostAddress> addresses;
+    private final SessionFactory factory;
+    private final GraphHostBalancer balancer;
+    // 按graphd地址区分的空闲会话
+    private final Map<String, ConcurrentLinkedQueue<Session>> idleSessions = new ConcurrentHashMap<>();
+
+    private int refCount;
+
+    private NebulaSessionPool(String key, List<HostAddress> addresses, SessionFactory factory,
+                              int hostErrorThreshold, long hostEjectMillis) {
+        this.key = key;
+        this.addresses = addresses;
+        this.factory = factory;
+        this.balancer = new GraphHostBalancer(addresses, hostErrorThreshold, hostEjectMillis);
+    }
+
+    // 获取共享连接池 引用计数加一
+    public static NebulaSessionPool acquire(List<HostAddress> addresses, String username, String password,
+                                            String space, int maxConnSize, int hostErrorThreshold,
+                                            long hostEjectMillis) {
+        return acquire(poolKey(addresses, username, password, space), addresses,
+                () -> new NebulaPoolFactory(username, password, space, maxConnSize),
+                hostErrorThreshold, hostEjectMillis);
+    }
+
+    static synchronized NebulaSessionPool acquire(String key, List<HostAddress> addresses,
+                                                  Supplier<SessionFactory> factory, int hostErrorThreshold,
+                                                  long hostEjectMillis) {
+        NebulaSessionPool sessionPool = POOLS.get(key);
+        if (sessionPool == null) {
+            sessionPool = new NebulaSessionPool(key, addresses, factory.get(), hostErrorThreshold, hostEjectMillis);
+            POOLS.put(key, sessionPool);
+            LOG.info("NebulaPool[" + key + "] initialized.");
+        }
+        sessionPool.refCount++;
+        return sessionPool;
+    }
+
+    // 密码不同的作业不能共享已认证的会话 键中只保存凭据的摘要
+    static String poolKey(List<HostAddress> addresses, String username, String password, String space) {
+        String hosts = addresses.stream().map(HostAddress::toString).sorted().collect(Collectors.joining(","));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", hash[i]));
+            }
+            return hosts + "|" + username + "|" + space + "|" + sb;
+        } catch (NoSuchAlgorithmException e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION, e.getMessage(), e);
+        }
+    }
+
+    // 释放共享连接池 引用计数为零时关闭所有会话与连接池
+    public void release() {
+        synchronized (NebulaSessionPool.class) {
+            if (--refCount > 0) {
+                return;
+            }
+            POOLS.remove(key);
+        }
+        for (ConcurrentLinkedQueue<Session> sessions : idleSessions.values()) {
+            Session session;
+            while ((session = sessions.poll()) != null) {
+                session.release();
+            }
+        }
+        factory.close();
+        LOG.info("NebulaPool[" + key + "] closed.");
+    }
+
+    // 借出一个已切换到目标图空间的会话
+    public Session borrowSession() {
+        try {
+            return new BalancedSession(this, openSession());
+        } catch (Exception e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                    "Failed to get session from " + addresses + ": " + e.getMessage(), e);
+        }
+    }
+
+    // 归还会话以便其他Task复用
+    public void returnSession(Session session) {
+        if (session instanceof BalancedSession) {
+            session = ((BalancedSession) session).detach();
+        }
+        if (session != null) {
+            park(session);
+        }
+    }
+
+    GraphHostBalancer getBalancer() {
+        return balancer;
+    }
+
+    // 在balancer选择的graphd上打开会话 失败时依次尝试其他graphd
+    Session openSession() throws Exception {
+        Exception last = null;
+        for (int i = 0; i < addresses.size(); i++) {
+            HostAddress host = balancer.acquire();
+            try {
+                return openSession(host);
+            } catch (Exception e) {
+                balancer.release(host);
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    // 在指定的graphd上打开会话 优先复用健康的空闲会话; 失败时计入该graphd的错误次数
+    Session openSession(HostAddress host) throws Exception {
+        ConcurrentLinkedQueue<Session> idle = idleSessions.get(host.toString());
+        Session session;
+        while (idle != null && (session = idle.poll()) != null) {
+            if (session.ping()) {
+                return session;
+            }
+            LOG.warn("Drop unhealthy session of " + host);
+            session.release();
+        }
+        try {
+            return factory.open(host);
+        } catch (Exception e) {
+            balancer.onFailure(host);
+            throw e;
+        }
+    }
+
+    // 缓存空闲会话 按会话所在的graphd区分
+    void park(Session session) {
+        idleSessions.computeIfAbsent(session.getGraphHost().toString(), host -> new ConcurrentLinkedQueue<>())
+                .offer(session);
+    }
+
+    // 每个graphd使用独立的NebulaPool 在首次使用时初始化
+    private static class NebulaPoolFactory implements SessionFactory {
+        private final String username;
+        private final String password;
+        private final String space;
+        private final int maxConnSize;
+        private final Map<String, NebulaPool> pools = new HashMap<>();
+
+        NebulaPoolFactory(String username, String password, String space, int maxConnSize) {
+            this.username = username;
+            this.password = password;
+            this.space = space;
+            this.maxConnSize = maxConnSize;
+        }
+
+        @Override
+        public Session open(HostAddress host) throws Exception {
+            Session session = pool(host).getSession(username, password, true);
+            ResultSet rs = session.execute("USE " + space);
+            if (!rs.isSucceeded()) {
+                session.release();
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                        "Failed to use space " + space + ": " + rs.getErrorMessage());
+            }
+            return session;
+        }
+
+        private NebulaPool pool(HostAddress host) throws Exception {
+            synchronized (pools) {
+                NebulaPool pool = pools.get(host.toString());
+                if (pool == null) {
+                    pool = new NebulaPool();
+                    NebulaPoolConfig nebulaPoolConfig = new NebulaPoolConfig();
+                    nebulaPoolConfig.setMaxConnSize(maxConnSize);
+                    if (!pool.init(Collections.singletonList(host), nebulaPoolConfig)) {
+                        pool.close();
+                        throw new IOErrorException(IOErrorException.E_NO_OPEN, "Graphd " + host + " is unavailable");
+                    }
+                    pools.put(host.toString(), pool);
+                }
+                return pool;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (pools) {
+                for (NebulaPool pool : pools.values()) {
+                    pool.close();
+                }
+                pools.clear();
+            }
+        }
+    }
+
+    // 解析graphd地址列表 格式为host:port
+    public static List<HostAddress> parseAddresses(List<String> graphAddress) {
+        List<HostAddress> addresses = new ArrayList<>();
+        for (String address : graphAddress) {
+            String[] hostAndPort = address.trim().split(":");
+            if (hostAndPort.length != 2) {
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                        "Parameter [" + Key.GRAPH_ADDRESS + "] should be host:port, but got " + address);
+            }
+            addresses.add(new HostAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+        }
+        return addresses;
+    }
+
+    // 从jdbcUrl中截取图空间名称 jdbc:nebula://cba
+    public static String parseSpace(String jdbcUrl) {
+        String url = jdbcUrl.trim();
+        if (url.contains("?")) {
+            url = url.substring(0, url.indexOf('?'));
+        }
+        String space = url.substring(url.lastIndexOf('/') + 1);
+        if (space.isEmpty()) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    "Cannot find graph space in [" + Key.JDBC_URL + "]: " + jdbcUrl);
+        }
+        return space;
+    }
+}
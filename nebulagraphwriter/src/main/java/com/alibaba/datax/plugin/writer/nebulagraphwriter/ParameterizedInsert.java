@@ -0,0 +1,141 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.exception.DataXException;
+import com.vesoft.nebula.PropertyType;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 参数化的insert语句(writeMode为parameterized)
+ * 语句模板只与表和行数有关, 如 INSERT VERTEX player (name,age) VALUES $t0_v0:($t0_p0_0,$t0_p0_1);
+ * nGQL的INSERT不能以UNWIND的列表作为输入, 因此每个行数对应一个模板, 只缓存最近使用的少量模板:
+ * 大部分批次为满批, 去重、尾批和二分定位产生的其他行数命中率低, 不应无限缓存;
+ * VID和属性值按NebulaGraph字段类型转换为Value后作为参数随executeWithParameter发送, 无需转义和拼接字面量.
+ * 参数名以表的下标为前缀, 多个表的语句合并为一次请求时互不冲突
+ */
+public class ParameterizedInsert {
+
+    private final WritePlan plan;
+    private final String prefix;
+    private final PropertyType[] types;
+    // 行数 -> 语句模板 按访问顺序淘汰
+    private final Map<Integer, Template> templates = new LinkedHashMap<Integer, Template>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Template> eldest) {
+            return size() > Constants.MAX_PARAMETERIZED_TEMPLATES;
+        }
+    };
+
+    static class Template {
+        final String nGql;
+        // 第row行的VID(边为起点)、终点及属性的参数名
+        final String[] vids;
+        final String[] dsts;
+        final String[][] properties;
+
+        Template(String nGql, String[] vids, String[] dsts, String[][] properties) {
+            this.nGql = nGql;
+            this.vids = vids;
+            this.dsts = dsts;
+            this.properties = properties;
+        }
+    }
+
+    public ParameterizedInsert(WritePlan plan, int tableIndex) {
+        this.plan = plan;
+        this.prefix = "t" + tableIndex + "_";
+        // nGQL中rank只能是整数字面量 不能使用参数
+        if (plan.rankIndex >= 0) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    "rankKey of edge " + plan.table + " is not supported in parameterized mode");
+        }
+        this.types = new PropertyType[plan.properties.size()];
+        for (int i = 0; i < types.length; i++) {
+            ColumnMeta colMeta = plan.properties.get(i);
+            try {
+                types[i] = ValueConverter.typeDefOf(colMeta.type).getType();
+            } catch (IllegalArgumentException e) {
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                        "Property " + plan.table + "." + colMeta.field + " of type " + colMeta.type
+                                + " is not supported in parameterized mode");
+            }
+        }
+    }
+
+    // 追加第rows[i]行(rows为null时为第i行)组成的insert语句 并填充参数
+    public void bind(StatementBuilder sb, Map<String, Object> params, List<Record> records, int[] rows, int count) {
+        Template template = template(count);
+        sb.append(template.nGql);
+        for (int i = 0; i < count; i++) {
+            Record record = records.get(rows == null ? i : rows[i]);
+            if (plan.tableType == TableType.TAG) {
+                params.put(template.vids[i], vidValue(plan.vid, plan.vidColumn(record)));
+            } else {
+                params.put(template.vids[i], vidValue(plan.src, plan.srcColumn(record)));
+                params.put(template.dsts[i], vidValue(plan.dst, plan.dstColumn(record)));
+            }
+            String[] names = template.properties[i];
+            for (int j = 0; j < types.length; j++) {
+                params.put(names[j], ValueConverter.valueOf(types[j], record.getColumn(plan.projection[j])));
+            }
+        }
+    }
+
+    Template template(int rows) {
+        synchronized (templates) {
+            return templates.computeIfAbsent(rows, this::compile);
+        }
+    }
+
+    int cachedTemplates() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    private Template compile(int rows) {
+        StringBuilder sb = new StringBuilder(plan.header);
+        String[] vids = new String[rows];
+        String[] dsts = new String[rows];
+        String[][] properties = new String[rows][types.length];
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sb.append(',');
+            vids[i] = prefix + (plan.tableType == TableType.TAG ? "v" : "s") + i;
+            appendVid(sb, plan.tableType == TableType.TAG ? plan.vid : plan.src, vids[i]);
+            if (plan.tableType == TableType.EDGE_TYPE) {
+                dsts[i] = prefix + "d" + i;
+                sb.append("->");
+                appendVid(sb, plan.dst, dsts[i]);
+            }
+            sb.append(":(");
+            for (int j = 0; j < types.length; j++) {
+                if (j > 0) sb.append(',');
+                properties[i][j] = prefix + "p" + i + "_" + j;
+                sb.append('$').append(properties[i][j]);
+            }
+            sb.append(')');
+        }
+        return new Template(sb.toString(), vids, dsts, properties);
+    }
+
+    // $t0_v0 / hash($t0_v0)
+    private static void appendVid(StringBuilder sb, VidStrategy.Encoder encoder, String name) {
+        if (encoder.type == VidStrategy.Type.HASH) {
+            sb.append("hash($").append(name).append(')');
+        } else {
+            sb.append('$').append(name);
+        }
+    }
+
+    // INT64的VID为整数 其他VID为按模板生成的字符串
+    private static Object vidValue(VidStrategy.Encoder encoder, Column column) {
+        if (encoder.type == VidStrategy.Type.INT64) {
+            return column.asLong();
+        }
+        return encoder.routingKey(column);
+    }
+}
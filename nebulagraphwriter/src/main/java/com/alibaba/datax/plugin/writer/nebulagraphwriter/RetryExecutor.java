@@ -0,0 +1,69 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 可重试异常的重试执行器
+ * 批次写入遇到可重试的集群异常时按指数退避(带随机抖动)重试, 最多重试maxRetries次;
+ * 数据异常直接抛出, 由调用方定位脏数据
+ */
+public class RetryExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(RetryExecutor.class);
+
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final CircuitBreaker circuitBreaker;
+    // 每次重试前回调 用于统计重试次数
+    private final Runnable onRetry;
+
+    public RetryExecutor(int maxRetries, long baseBackoffMillis, long maxBackoffMillis, CircuitBreaker circuitBreaker,
+                         Runnable onRetry) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseBackoffMillis = Math.max(1, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+        this.circuitBreaker = circuitBreaker;
+        this.onRetry = onRetry;
+    }
+
+    public int execute(WriteWorker.BatchConsumer writer, List<Record> batch) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            circuitBreaker.acquire();
+            try {
+                int affectedRows = writer.accept(batch);
+                circuitBreaker.onSuccess();
+                return affectedRows;
+            } catch (Exception e) {
+                if (!ErrorClassifier.isRetryable(e)) {
+                    // graphd可以正常响应 说明集群是健康的
+                    circuitBreaker.onSuccess();
+                    throw e;
+                }
+                circuitBreaker.onFailure();
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                long backoff = backoffMillis(attempt);
+                LOG.warn("Retry batch of " + batch.size() + " records in " + backoff + "ms (" + (attempt + 1) + "/"
+                        + maxRetries + "), due to error: " + e.getMessage());
+                onRetry.run();
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    // base * 2^attempt 上限为max 在[backoff/2, backoff]之间随机抖动 避免多个写入线程同时重试
+    long backoffMillis(int attempt) {
+        long backoff = baseBackoffMillis << Math.min(attempt, 30);
+        if (backoff <= 0 || backoff > maxBackoffMillis) {
+            backoff = maxBackoffMillis;
+        }
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+}
@@ -0,0 +1,34 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import org.rocksdb.EnvOptions;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.SstFileWriter;
+
+import java.io.File;
+import java.util.Iterator;
+
+/**
+ * 使用RocksDB的SstFileWriter生成SST文件
+ * 单独成类, 只有SST模式才会加载RocksDB的本地库
+ */
+public class RocksDbSstWriter implements SstFileBuilder.SortedFileWriter {
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    @Override
+    public void write(File file, Iterator<byte[][]> entries) throws Exception {
+        try (Options options = new Options();
+             EnvOptions envOptions = new EnvOptions();
+             SstFileWriter writer = new SstFileWriter(envOptions, options)) {
+            writer.open(file.getAbsolutePath());
+            while (entries.hasNext()) {
+                byte[][] entry = entries.next();
+                writer.put(entry[0], entry[1]);
+            }
+            writer.finish();
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package com.alibaba.datax.plugin.writer.nebulagraphwriter;
 
 import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.util.Configuration;
+import com.facebook.thrift.TException;
 import com.vesoft.nebula.client.graph.data.ResultSet;
 import com.vesoft.nebula.client.graph.data.ValueWrapper;
 import com.vesoft.nebula.client.graph.exception.IOErrorException;
 import com.vesoft.nebula.client.graph.exception.InvalidValueException;
 import com.vesoft.nebula.client.graph.net.Session;
+import com.vesoft.nebula.client.meta.MetaClient;
+import com.vesoft.nebula.client.meta.exception.ExecuteFailedException;
+import com.vesoft.nebula.meta.EdgeItem;
+import com.vesoft.nebula.meta.TagItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -102,6 +109,130 @@ public class SchemaManager {
         return columnMetas;
     }
 
+    // 加载图空间的分片数
+    public int loadPartitionNum(String space) throws DataXException {
+        try {
+            int partitionNum = (int) describeSpace(space).colValues("Partition Number").get(0).asLong();
+            LOG.info("Partition number of space " + space + ": " + partitionNum);
+            return partitionNum;
+        } catch (InvalidValueException e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION, e.getMessage());
+        }
+    }
+
+    // 加载图空间的VID长度 INT64为8 FIXED_STRING(N)为N
+    public int loadVidLength(String space) throws DataXException {
+        try {
+            String vidType = describeSpace(space).colValues("Vid Type").get(0).asString().toUpperCase();
+            int vidLength = vidType.startsWith("INT64") ? 8
+                    : Integer.parseInt(vidType.substring(vidType.indexOf('(') + 1, vidType.indexOf(')')).trim());
+            LOG.info("Vid type of space " + space + ": " + vidType);
+            return vidLength;
+        } catch (InvalidValueException | UnsupportedEncodingException | NumberFormatException
+                 | StringIndexOutOfBoundsException e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                    "Failed to load vid type of space " + space + ": " + e.getMessage());
+        }
+    }
+
+    // 通过metad加载各表的tag id/edge type及最新的schema版本 SST模式的key与value需要
+    public static void loadSchemaIds(MetaClient metaClient, String space, Map<String, TableMeta> tableMetas)
+            throws DataXException {
+        try {
+            for (TagItem tag : metaClient.getTags(space)) {
+                TableMeta tableMeta = tableMetas.get(new String(tag.getTag_name(), StandardCharsets.UTF_8));
+                if (tableMeta != null && tableMeta.tableType == TableType.TAG && tag.getVersion() >= tableMeta.version) {
+                    tableMeta.id = tag.getTag_id();
+                    tableMeta.version = tag.getVersion();
+                }
+            }
+            for (EdgeItem edge : metaClient.getEdges(space)) {
+                TableMeta tableMeta = tableMetas.get(new String(edge.getEdge_name(), StandardCharsets.UTF_8));
+                if (tableMeta != null && tableMeta.tableType == TableType.EDGE_TYPE
+                        && edge.getVersion() >= tableMeta.version) {
+                    tableMeta.id = edge.getEdge_type();
+                    tableMeta.version = edge.getVersion();
+                }
+            }
+        } catch (TException | ExecuteFailedException e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                    "Failed to load schema of space " + space + " from metad: " + e.getMessage());
+        }
+        for (TableMeta tableMeta : tableMetas.values()) {
+            if (tableMeta.id == 0) {
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                        "Cannot find " + tableMeta.name + " in metad of space " + space);
+            }
+        }
+    }
+
+    private ResultSet describeSpace(String space) {
+        try {
+            ResultSet rs = session.execute("describe space " + space);
+            if (!rs.isSucceeded() || rs.rowsSize() == 0) {
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                        "Failed to describe space " + space + ": " + rs.getErrorMessage());
+            }
+            return rs;
+        } catch (IOErrorException e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION, e.getMessage());
+        }
+    }
+
+    // 将元信息写入配置 由Job加载一次后随split下发给各个Task
+    public static void writeToConfiguration(Configuration conf, List<String> tables, Map<String, TableMeta> tableMetas,
+                                            Map<String, List<ColumnMeta>> columnMetas) {
+        List<Map<String, Object>> schema = new ArrayList<>();
+        for (String table : tables) {
+            Map<String, Object> tableSchema = new HashMap<>();
+            tableSchema.put("name", table);
+            tableSchema.put("tableType", tableMetas.get(table).tableType.name());
+            tableSchema.put("id", tableMetas.get(table).id);
+            tableSchema.put("version", tableMetas.get(table).version);
+            List<Map<String, Object>> columns = new ArrayList<>();
+            for (ColumnMeta colMeta : columnMetas.getOrDefault(table, new ArrayList<>())) {
+                Map<String, Object> column = new HashMap<>();
+                column.put("field", colMeta.field);
+                column.put("type", colMeta.type);
+                column.put("null", colMeta.Null);
+                columns.add(column);
+            }
+            tableSchema.put("columns", columns);
+            schema.add(tableSchema);
+        }
+        conf.set(Key.SCHEMA, schema);
+    }
+
+    // 从配置中还原Job下发的元信息 配置中不存在时返回false
+    public static boolean readFromConfiguration(Configuration conf, Map<String, TableMeta> tableMetas,
+                                                Map<String, List<ColumnMeta>> columnMetas) {
+        List<Configuration> schema = conf.getListConfiguration(Key.SCHEMA);
+        if (schema == null || schema.isEmpty()) {
+            return false;
+        }
+        for (Configuration tableSchema : schema) {
+            TableMeta tableMeta = new TableMeta();
+            tableMeta.name = tableSchema.getString("name");
+            tableMeta.tableType = TableType.valueOf(tableSchema.getString("tableType"));
+            tableMeta.id = tableSchema.getInt("id", 0);
+            tableMeta.version = tableSchema.getLong("version", 0L);
+            tableMetas.put(tableMeta.name, tableMeta);
+
+            List<ColumnMeta> colMetaList = new ArrayList<>();
+            for (Configuration column : tableSchema.getListConfiguration("columns")) {
+                ColumnMeta columnMeta = new ColumnMeta();
+                columnMeta.field = column.getString("field");
+                columnMeta.type = column.getString("type");
+                columnMeta.Null = column.getString("null");
+                colMetaList.add(columnMeta);
+            }
+            if (!colMetaList.isEmpty()) {
+                columnMetas.put(tableMeta.name, colMetaList);
+            }
+        }
+        return true;
+    }
+
     // 创建Tag类型表的元信息
     private TableMeta buildTagTableMeta(ValueWrapper colVal) throws InvalidValueException, UnsupportedEncodingException {
         TableMeta tableMeta = new TableMeta();
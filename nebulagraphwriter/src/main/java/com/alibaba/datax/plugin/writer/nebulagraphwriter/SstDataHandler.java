@@ -0,0 +1,127 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.plugin.RecordReceiver;
+import com.alibaba.datax.common.plugin.TaskPluginCollector;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.fastjson.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SST模式的DataHandler
+ * 不经过graphd, 将record按存储层格式编码后按分片写入本地SST文件, 由用户通过DOWNLOAD/INGEST导入NebulaGraph;
+ * 元信息、分片数和VID长度均由Job加载后下发, Task运行期间不访问集群
+ */
+public class SstDataHandler implements DataHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(SstDataHandler.class);
+
+    private final List<String> tables;
+    private final List<String> columns;
+    private final List<JSONObject> edgeTypes;
+    private final VidStrategy vidStrategy;
+    private final int partitionNum;
+    private final int vidLength;
+    private final File sstDir;
+    private final String filePrefix;
+    private final long bufferBytes;
+    private final SstFileBuilder.SortedFileWriter fileWriter;
+
+    private final Map<String, TableMeta> tableMetas = new HashMap<>();
+    private final Map<String, List<ColumnMeta>> columnMetas = new HashMap<>();
+
+    public SstDataHandler(Configuration conf) {
+        this(conf, rocksDbSstWriter());
+    }
+
+    SstDataHandler(Configuration conf, SstFileBuilder.SortedFileWriter fileWriter) {
+        this.tables = conf.getList(Key.TABLE, String.class);
+        this.columns = conf.getList(Key.COLUMN, String.class);
+        this.edgeTypes = conf.getList(Key.EDGE_TYPE, JSONObject.class);
+        this.vidStrategy = VidStrategy.fromConfiguration(conf);
+        this.partitionNum = conf.getInt(Key.PARTITION_NUM, 0);
+        this.vidLength = conf.getInt(Key.VID_LENGTH, 0);
+        String dir = conf.getString(Key.SST_DIR);
+        if (dir == null) throw missing(Key.SST_DIR);
+        if (partitionNum <= 0) throw missing(Key.PARTITION_NUM);
+        if (vidLength <= 0) throw missing(Key.VID_LENGTH);
+        this.sstDir = new File(dir);
+        this.filePrefix = "task-" + conf.getInt(Key.TASK_INDEX, 0);
+        this.bufferBytes = conf.getLong(Key.SST_BUFFER_BYTES, Constants.DEFAULT_SST_BUFFER_BYTES);
+        this.fileWriter = fileWriter;
+        if (!SchemaManager.readFromConfiguration(conf, tableMetas, columnMetas)) {
+            throw missing(Key.SCHEMA);
+        }
+    }
+
+    @Override
+    public long handle(RecordReceiver rec, TaskPluginCollector collector) {
+        Map<String, WritePlan> plans = WritePlan.compileAll(tables, tableMetas, columnMetas, columns, edgeTypes,
+                vidStrategy);
+        NebulaPartitioner partitioner = new NebulaPartitioner(partitionNum);
+        List<SstEncoder> encoders = new ArrayList<>(tables.size());
+        for (String table : tables) {
+            encoders.add(new SstEncoder(plans.get(table), tableMetas.get(table), columnMetas.get(table), vidLength,
+                    partitioner));
+        }
+        SstFileBuilder builder = new SstFileBuilder(sstDir, filePrefix, partitionNum, bufferBytes, fileWriter);
+
+        long count = 0, dirty = 0;
+        // 一条record在所有表中编码成功后才写入 避免部分表写入
+        List<Object[]> encoded = new ArrayList<>();
+        try {
+            Record record;
+            while ((record = rec.getFromReader()) != null) {
+                encoded.clear();
+                try {
+                    for (SstEncoder encoder : encoders) {
+                        encoder.encode(record, (partId, key, value) -> encoded.add(new Object[]{partId, key, value}));
+                    }
+                } catch (Exception e) {
+                    LOG.error(e.getMessage(), e);
+                    collector.collectDirtyRecord(record, e);
+                    dirty++;
+                    continue;
+                }
+                for (Object[] kv : encoded) {
+                    builder.add((Integer) kv[0], (byte[]) kv[1], (byte[]) kv[2]);
+                }
+                count++;
+            }
+            builder.finish();
+        } catch (DataXException e) {
+            throw e;
+        } catch (Exception e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION, e.getMessage(), e);
+        }
+        LOG.info("Encoded " + count + " records (" + dirty + " dirty) into " + builder.getEntries() + " keys, "
+                + builder.getFiles() + " sst files under " + sstDir);
+        return count;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // rocksdbjni不随插件打包 未放入libs目录或本地库加载失败时给出明确的提示
+    private static SstFileBuilder.SortedFileWriter rocksDbSstWriter() {
+        try {
+            return new RocksDbSstWriter();
+        } catch (NoClassDefFoundError | UnsatisfiedLinkError | ExceptionInInitializerError e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                    "sst mode requires rocksdbjni-6.29.5.jar in plugin/writer/nebulagraphwriter/libs: " + e, e);
+        }
+    }
+
+    private static DataXException missing(String key) {
+        return DataXException.asDataXException(NebulaGraphWriterErrorCode.REQUIRED_VALUE,
+                "Parameter [" + key + "] is required in sst mode");
+    }
+}
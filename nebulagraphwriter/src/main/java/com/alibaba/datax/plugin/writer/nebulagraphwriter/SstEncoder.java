@@ -0,0 +1,109 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.exception.DataXException;
+import com.vesoft.nebula.PropertyType;
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.encoder.NebulaCodec;
+import com.vesoft.nebula.encoder.NebulaCodecImpl;
+import com.vesoft.nebula.meta.ColumnDef;
+import com.vesoft.nebula.meta.ColumnTypeDef;
+import com.vesoft.nebula.meta.EdgeItem;
+import com.vesoft.nebula.meta.Schema;
+import com.vesoft.nebula.meta.SchemaProp;
+import com.vesoft.nebula.meta.TagItem;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个Tag/EdgeType的存储层key/value编码器(SST模式)
+ * schema由SchemaManager加载的ColumnMeta重建, tag id/edge type与schema版本来自metad;
+ * 点生成一个tag key, 边分别在起点和终点所在的分片生成出边key(edge type)和入边key(-edge type), 两者value相同
+ */
+public class SstEncoder {
+
+    // 编码结果的接收方 按分片写入SST文件
+    public interface KeyValueConsumer {
+        void accept(int partId, byte[] key, byte[] value) throws Exception;
+    }
+
+    private final WritePlan plan;
+    private final int vidLength;
+    private final NebulaPartitioner partitioner;
+    private final NebulaCodec codec = new NebulaCodecImpl();
+    private final TagItem tagItem;
+    private final EdgeItem edgeItem;
+    private final List<String> names = new ArrayList<>();
+    private final PropertyType[] types;
+
+    public SstEncoder(WritePlan plan, TableMeta tableMeta, List<ColumnMeta> colMetas, int vidLength,
+                      NebulaPartitioner partitioner) {
+        this.plan = plan;
+        this.vidLength = vidLength;
+        this.partitioner = partitioner;
+        Schema schema = schemaOf(colMetas);
+        if (tableMeta.tableType == TableType.TAG) {
+            this.tagItem = new TagItem(tableMeta.id, tableMeta.name.getBytes(StandardCharsets.UTF_8),
+                    tableMeta.version, schema);
+            this.edgeItem = null;
+        } else {
+            this.tagItem = null;
+            this.edgeItem = new EdgeItem(tableMeta.id, tableMeta.name.getBytes(StandardCharsets.UTF_8),
+                    tableMeta.version, schema);
+        }
+        this.types = new PropertyType[plan.properties.size()];
+        for (int i = 0; i < types.length; i++) {
+            ColumnMeta colMeta = plan.properties.get(i);
+            names.add(colMeta.field);
+            types[i] = ValueConverter.typeDefOf(colMeta.type).getType();
+        }
+    }
+
+    public void encode(Record record, KeyValueConsumer out) throws Exception {
+        List<Object> values = new ArrayList<>(types.length);
+        for (int i = 0; i < types.length; i++) {
+            values.add(ValueConverter.valueOf(types[i], record.getColumn(plan.projection[i])));
+        }
+        if (tagItem != null) {
+            Column vid = plan.vidColumn(record);
+            int partId = plan.vid.partId(partitioner, vid);
+            out.accept(partId, codec.vertexKey(vidLength, partId, vidBytes(plan.vid, vid), tagItem.getTag_id()),
+                    codec.encodeTag(tagItem, names, values));
+            return;
+        }
+        Column src = plan.srcColumn(record);
+        Column dst = plan.dstColumn(record);
+        byte[] srcBytes = vidBytes(plan.src, src);
+        byte[] dstBytes = vidBytes(plan.dst, dst);
+        int srcPart = plan.src.partId(partitioner, src);
+        int dstPart = plan.dst.partId(partitioner, dst);
+        byte[] value = codec.encodeEdge(edgeItem, names, values);
+        int edgeType = edgeItem.getEdge_type();
+        long rank = plan.rank(record);
+        out.accept(srcPart, codec.edgeKeyByDefaultVer(vidLength, srcPart, srcBytes, edgeType, rank, dstBytes), value);
+        out.accept(dstPart, codec.edgeKeyByDefaultVer(vidLength, dstPart, dstBytes, -edgeType, rank, srcBytes), value);
+    }
+
+    private byte[] vidBytes(VidStrategy.Encoder encoder, Column column) {
+        byte[] bytes = encoder.vidBytes(column);
+        if (bytes.length > vidLength) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    "Vid " + encoder.routingKey(column) + " is longer than the vid length " + vidLength);
+        }
+        return bytes;
+    }
+
+    // 由DESCRIBE TAG/EDGE的字段元信息重建schema 字段顺序即存储顺序
+    static Schema schemaOf(List<ColumnMeta> colMetas) {
+        List<ColumnDef> columns = new ArrayList<>(colMetas.size());
+        for (ColumnMeta colMeta : colMetas) {
+            ColumnDef column = new ColumnDef(colMeta.field.getBytes(StandardCharsets.UTF_8), ValueConverter.typeDefOf(colMeta.type));
+            column.setNullable(!"NO".equalsIgnoreCase(colMeta.Null));
+            columns.add(column);
+        }
+        return new Schema(columns, new SchemaProp());
+    }
+}
@@ -0,0 +1,314 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 按分片生成有序的SST文件
+ * key/value按分片缓存在内存中, 缓存的字节数达到上限时, 每个分片的数据按key的字节序排序后溢写为一个临时的有序段;
+ * 数据写完时每个分片的所有有序段与内存中剩余的数据多路归并, 每个Task每个分片只生成一个SST文件
+ * {sstDir}/{partId}/{prefix}.sst, 即NebulaGraph下载/导入(DOWNLOAD/INGEST)所需的目录结构, 避免大量小文件拖慢INGEST和compaction;
+ * 重复的key只保留最后写入的value
+ */
+public class SstFileBuilder {
+    private static final Logger LOG = LoggerFactory.getLogger(SstFileBuilder.class);
+
+    // 将排好序的key/value写成一个文件 默认由RocksDbSstWriter实现
+    public interface SortedFileWriter {
+        // entries按key升序返回{key, value} 没有重复的key
+        void write(File file, Iterator<byte[][]> entries) throws Exception;
+    }
+
+    private final File dir;
+    private final String prefix;
+    private final long bufferBytes;
+    private final SortedFileWriter writer;
+    // 溢写的有序段所在的临时目录 生成SST文件后删除
+    private final File runDir;
+    // 下标为分片编号减1
+    private final List<List<byte[]>> keys = new ArrayList<>();
+    private final List<List<byte[]>> values = new ArrayList<>();
+    // 各分片已溢写的有序段 按溢写顺序排列
+    private final List<List<File>> runs = new ArrayList<>();
+
+    private long bufferedBytes;
+    private int seq;
+    private int files;
+    private long entries;
+
+    public SstFileBuilder(File dir, String prefix, int partitionNum, long bufferBytes, SortedFileWriter writer) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.bufferBytes = bufferBytes;
+        this.writer = writer;
+        this.runDir = new File(dir, "." + prefix + "-runs");
+        for (int i = 0; i < partitionNum; i++) {
+            keys.add(new ArrayList<>());
+            values.add(new ArrayList<>());
+            runs.add(new ArrayList<>());
+        }
+    }
+
+    public void add(int partId, byte[] key, byte[] value) throws Exception {
+        keys.get(partId - 1).add(key);
+        values.get(partId - 1).add(value);
+        bufferedBytes += key.length + value.length + 32;
+        if (bufferedBytes >= bufferBytes) {
+            spill();
+        }
+    }
+
+    // 数据写完后调用 每个分片归并为一个SST文件
+    public void finish() throws Exception {
+        for (int i = 0; i < keys.size(); i++) {
+            List<Iterator<byte[][]>> sources = new ArrayList<>();
+            List<RunReader> readers = new ArrayList<>();
+            try {
+                for (File run : runs.get(i)) {
+                    RunReader reader = new RunReader(run);
+                    readers.add(reader);
+                    sources.add(reader);
+                }
+                if (!keys.get(i).isEmpty()) {
+                    sources.add(sorted(i).iterator());
+                }
+                if (sources.isEmpty()) {
+                    continue;
+                }
+                File partDir = new File(dir, String.valueOf(i + 1));
+                if (!partDir.isDirectory() && !partDir.mkdirs()) {
+                    throw new IOException("Failed to create directory " + partDir);
+                }
+                CountingIterator merged = new CountingIterator(sources.size() == 1 ? sources.get(0) : merge(sources));
+                writer.write(new File(partDir, prefix + ".sst"), merged);
+                files++;
+                entries += merged.count;
+            } finally {
+                for (RunReader reader : readers) {
+                    reader.close();
+                }
+            }
+        }
+        for (List<File> partRuns : runs) {
+            for (File run : partRuns) {
+                if (!run.delete()) {
+                    LOG.warn("Failed to delete " + run);
+                }
+            }
+        }
+        if (runDir.isDirectory() && !runDir.delete()) {
+            LOG.warn("Failed to delete " + runDir);
+        }
+        LOG.info("Merged " + seq + " spilled runs into " + files + " sst files under " + dir + ".");
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    // 将所有分片缓存的数据各自写成一个有序段 格式为: ([key长度][key][value长度][value])...
+    private void spill() throws IOException {
+        if (!runDir.isDirectory() && !runDir.mkdirs()) {
+            throw new IOException("Failed to create directory " + runDir);
+        }
+        seq++;
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).isEmpty()) {
+                continue;
+            }
+            File run = new File(runDir, (i + 1) + "-" + seq + ".run");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(run), 64 * 1024))) {
+                for (byte[][] entry : sorted(i)) {
+                    out.writeInt(entry[0].length);
+                    out.write(entry[0]);
+                    out.writeInt(entry[1].length);
+                    out.write(entry[1]);
+                }
+            }
+            runs.get(i).add(run);
+        }
+        LOG.info("Spilled " + bufferedBytes + " bytes into run " + seq + " under " + runDir + ".");
+        bufferedBytes = 0;
+    }
+
+    // 排序并去重一个分片缓存的数据 之后清空缓存
+    private List<byte[][]> sorted(int part) {
+        List<byte[]> partKeys = keys.get(part);
+        List<byte[]> partValues = values.get(part);
+        Integer[] order = new Integer[partKeys.size()];
+        for (int j = 0; j < order.length; j++) {
+            order[j] = j;
+        }
+        // 稳定排序 相同的key保持写入顺序
+        Arrays.sort(order, (a, b) -> compare(partKeys.get(a), partKeys.get(b)));
+        List<byte[][]> sorted = new ArrayList<>(order.length);
+        for (int j = 0; j < order.length; j++) {
+            if (j + 1 < order.length && compare(partKeys.get(order[j]), partKeys.get(order[j + 1])) == 0) {
+                continue;
+            }
+            sorted.add(new byte[][]{partKeys.get(order[j]), partValues.get(order[j])});
+        }
+        keys.set(part, new ArrayList<>());
+        values.set(part, new ArrayList<>());
+        return sorted;
+    }
+
+    // 多路归并 相同的key取最后一个数据源(即最后写入)的value
+    static Iterator<byte[][]> merge(List<Iterator<byte[][]>> sources) {
+        PriorityQueue<Source> heap = new PriorityQueue<>((a, b) -> {
+            int cmp = compare(a.head[0], b.head[0]);
+            return cmp != 0 ? cmp : b.index - a.index;
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            Source source = new Source(i, sources.get(i));
+            if (source.advance()) {
+                heap.add(source);
+            }
+        }
+        return new Iterator<byte[][]>() {
+            @Override
+            public boolean hasNext() {
+                return !heap.isEmpty();
+            }
+
+            @Override
+            public byte[][] next() {
+                if (heap.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Source latest = heap.poll();
+                byte[][] entry = latest.head;
+                // 跳过较早数据源中相同的key
+                while (!heap.isEmpty() && compare(heap.peek().head[0], entry[0]) == 0) {
+                    Source stale = heap.poll();
+                    if (stale.advance()) {
+                        heap.add(stale);
+                    }
+                }
+                if (latest.advance()) {
+                    heap.add(latest);
+                }
+                return entry;
+            }
+        };
+    }
+
+    // RocksDB默认比较器: 按无符号字节的字典序
+    static int compare(byte[] a, byte[] b) {
+        int len = Math.min(a.length, b.length);
+        for (int i = 0; i < len; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    // 归并中的一个数据源 index越大写入越晚
+    private static class Source {
+        final int index;
+        final Iterator<byte[][]> entries;
+        byte[][] head;
+
+        Source(int index, Iterator<byte[][]> entries) {
+            this.index = index;
+            this.entries = entries;
+        }
+
+        boolean advance() {
+            head = entries.hasNext() ? entries.next() : null;
+            return head != null;
+        }
+    }
+
+    // 顺序读取溢写的有序段
+    private static class RunReader implements Iterator<byte[][]> {
+        private final DataInputStream in;
+        private byte[][] next;
+
+        RunReader(File run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 64 * 1024));
+            this.next = read();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public byte[][] next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            byte[][] entry = next;
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read spilled run", e);
+            }
+            return entry;
+        }
+
+        private byte[][] read() throws IOException {
+            int keyLength;
+            try {
+                keyLength = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            byte[] key = new byte[keyLength];
+            in.readFully(key);
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            return new byte[][]{key, value};
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // 统计写入文件的key数
+    private static class CountingIterator implements Iterator<byte[][]> {
+        private final Iterator<byte[][]> delegate;
+        long count;
+
+        CountingIterator(Iterator<byte[][]> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public byte[][] next() {
+            count++;
+            return delegate.next();
+        }
+    }
+}
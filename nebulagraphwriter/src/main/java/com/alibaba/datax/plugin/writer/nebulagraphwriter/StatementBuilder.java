@@ -0,0 +1,196 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.exception.DataXException;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * nGQL语句构建器
+ * 数值、字符串、VID和时间字面量直接追加到可复用的缓冲区中, 不再为每个值生成中间字符串;
+ * 字符串按nGQL规则转义引号和反斜杠, 不含特殊字符时直接整体追加
+ */
+public class StatementBuilder {
+
+    // 复用时缓冲区超过该容量则丢弃 避免偶发的超大批次长期占用内存
+    private static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+    // 每个写入线程各自持有一个构建器
+    private static final ThreadLocal<StatementBuilder> LOCAL = ThreadLocal.withInitial(StatementBuilder::new);
+
+    private StringBuilder sb;
+
+    public StatementBuilder() {
+        this.sb = new StringBuilder(1024);
+    }
+
+    // 获取当前线程的构建器并清空
+    public static StatementBuilder local() {
+        return LOCAL.get().reset();
+    }
+
+    public StatementBuilder reset() {
+        if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+            sb = new StringBuilder(1024);
+        } else {
+            sb.setLength(0);
+        }
+        return this;
+    }
+
+    public StatementBuilder append(String raw) {
+        sb.append(raw);
+        return this;
+    }
+
+    public StatementBuilder append(char c) {
+        sb.append(c);
+        return this;
+    }
+
+    public StatementBuilder appendNull() {
+        sb.append("NULL");
+        return this;
+    }
+
+    public StatementBuilder appendLong(long value) {
+        sb.append(value);
+        return this;
+    }
+
+    // NaN和Infinity不是合法的nGQL字面量 抛出后该记录经二分定位作为脏数据
+    public StatementBuilder appendDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    "Non-finite double value: " + value);
+        }
+        sb.append(value);
+        return this;
+    }
+
+    public StatementBuilder appendBool(boolean value) {
+        sb.append(value);
+        return this;
+    }
+
+    // "value"
+    public StatementBuilder appendString(String value) {
+        sb.append('"');
+        appendEscaped(value);
+        sb.append('"');
+        return this;
+    }
+
+    // "player_value" 前缀与值直接拼接 无需再从带引号的字面量中截取
+    public StatementBuilder appendVid(String prefix, String value) {
+        return appendVid(prefix, value, "");
+    }
+
+    public StatementBuilder appendVid(String prefix, String value, String suffix) {
+        sb.append('"');
+        appendEscaped(prefix);
+        appendEscaped(value);
+        appendEscaped(suffix);
+        sb.append('"');
+        return this;
+    }
+
+    // date("2022-01-01") time("12:00:00.000000") datetime("2022-01-01T12:00:00.000000")
+    // 日期类型的column直接按Date格式化 其他类型按字符串原样写入
+    public StatementBuilder appendTemporal(String function, Column column) {
+        sb.append(function).append("(\"");
+        if (column.getType() == Column.Type.DATE) {
+            Date date = column.asDate();
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneId.systemDefault());
+            switch (function) {
+                case "date":
+                    appendDate(time);
+                    break;
+                case "time":
+                    appendTime(time);
+                    break;
+                default:
+                    appendDate(time);
+                    sb.append('T');
+                    appendTime(time);
+            }
+        } else {
+            appendEscaped(column.asString());
+        }
+        sb.append("\")");
+        return this;
+    }
+
+    public int length() {
+        return sb.length();
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+    private void appendDate(LocalDateTime time) {
+        appendPadded(time.getYear(), 4).append('-');
+        appendPadded(time.getMonthValue(), 2).append('-');
+        appendPadded(time.getDayOfMonth(), 2);
+    }
+
+    private void appendTime(LocalDateTime time) {
+        appendPadded(time.getHour(), 2).append(':');
+        appendPadded(time.getMinute(), 2).append(':');
+        appendPadded(time.getSecond(), 2).append('.');
+        // NebulaGraph时间精度为微秒
+        appendPadded(time.getNano() / 1000, 6);
+    }
+
+    private StringBuilder appendPadded(int value, int width) {
+        for (int bound = 10, i = 1; i < width; i++, bound *= 10) {
+            if (value < bound) sb.append('0');
+        }
+        return sb.append(value);
+    }
+
+    private void appendEscaped(String value) {
+        int len = value.length();
+        int i = 0;
+        while (i < len && !needsEscape(value.charAt(i))) {
+            i++;
+        }
+        // 快速路径: 不含需要转义的字符
+        if (i == len) {
+            sb.append(value);
+            return;
+        }
+        sb.append(value, 0, i);
+        for (; i < len; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
@@ -3,6 +3,9 @@ package com.alibaba.datax.plugin.writer.nebulagraphwriter;
 public class TableMeta {
     TableType tableType;
     String name;
+    // SST模式下由metad加载的tag id/edge type及schema版本
+    int id;
+    long version;
 
     @Override
     public String toString() {
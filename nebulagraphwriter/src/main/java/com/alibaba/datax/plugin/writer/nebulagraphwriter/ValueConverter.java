@@ -0,0 +1,92 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.exception.DataXException;
+import com.vesoft.nebula.Date;
+import com.vesoft.nebula.DateTime;
+import com.vesoft.nebula.NullType;
+import com.vesoft.nebula.PropertyType;
+import com.vesoft.nebula.Time;
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.meta.ColumnTypeDef;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/**
+ * record的column按NebulaGraph字段类型转换为Value
+ * 供SST模式编码存储层的value及参数化写入绑定参数使用, 两者对同一字段得到相同的值
+ */
+public class ValueConverter {
+
+    private ValueConverter() {
+    }
+
+    // int64, fixed_string(30), datetime
+    public static ColumnTypeDef typeDefOf(String nebulaType) {
+        String type = nebulaType == null ? "" : nebulaType.trim().toUpperCase();
+        int open = type.indexOf('(');
+        if (open < 0) {
+            PropertyType propertyType = PropertyType.valueOf(type);
+            return new ColumnTypeDef(propertyType);
+        }
+        ColumnTypeDef typeDef = new ColumnTypeDef(PropertyType.valueOf(type.substring(0, open)));
+        typeDef.setType_length(Short.parseShort(type.substring(open + 1, type.indexOf(')', open)).trim()));
+        return typeDef;
+    }
+
+    // null及脏数据的column转换为NULL
+    public static Value valueOf(PropertyType type, Column column) {
+        if (column == null || column.getRawData() == null
+                || column.getType() == Column.Type.NULL || column.getType() == Column.Type.BAD) {
+            return Value.nVal(NullType.__NULL__);
+        }
+        switch (type) {
+            case BOOL:
+                return Value.bVal(column.asBoolean());
+            case INT8:
+            case INT16:
+            case INT32:
+            case INT64:
+            case TIMESTAMP:
+                return Value.iVal(column.asLong());
+            case FLOAT:
+            case DOUBLE:
+                return Value.fVal(column.asDouble());
+            case STRING:
+            case FIXED_STRING:
+                return Value.sVal(column.asString().getBytes(StandardCharsets.UTF_8));
+            case DATE: {
+                LocalDate date = column.getType() == Column.Type.DATE
+                        ? localDateTime(column).toLocalDate() : LocalDate.parse(column.asString().trim());
+                return Value.dVal(new Date((short) date.getYear(), (byte) date.getMonthValue(),
+                        (byte) date.getDayOfMonth()));
+            }
+            case TIME: {
+                LocalTime time = column.getType() == Column.Type.DATE
+                        ? localDateTime(column).toLocalTime() : LocalTime.parse(column.asString().trim());
+                return Value.tVal(new Time((byte) time.getHour(), (byte) time.getMinute(), (byte) time.getSecond(),
+                        time.getNano() / 1000));
+            }
+            case DATETIME: {
+                LocalDateTime time = column.getType() == Column.Type.DATE
+                        ? localDateTime(column) : LocalDateTime.parse(column.asString().trim().replace(' ', 'T'));
+                return Value.dtVal(new DateTime((short) time.getYear(), (byte) time.getMonthValue(),
+                        (byte) time.getDayOfMonth(), (byte) time.getHour(), (byte) time.getMinute(),
+                        (byte) time.getSecond(), time.getNano() / 1000));
+            }
+            default:
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                        "Property type " + type + " is not supported in sst or parameterized mode");
+        }
+    }
+
+    // 与nGQL模式一致 日期类型的column按本地时区转换
+    private static LocalDateTime localDateTime(Column column) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(column.asDate().getTime()), ZoneId.systemDefault());
+    }
+}
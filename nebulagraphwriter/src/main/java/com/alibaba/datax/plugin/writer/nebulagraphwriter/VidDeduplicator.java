@@ -0,0 +1,91 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Record;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 批次内按VID去重(后写覆盖先写)
+ * 点按VID去重, 边按(起点, 终点, rank)去重, VID取按VidStrategy生成的值(如1与"01"在int64下为同一个点);
+ * 使用以64位哈希为键的开放寻址表记录每个键最后出现的行, 哈希相同时再比较键值, 数组按线程复用;
+ * 键为空的记录原样保留, 写入时作为脏数据
+ */
+public class VidDeduplicator {
+
+    private static final ThreadLocal<VidDeduplicator> LOCAL = ThreadLocal.withInitial(VidDeduplicator::new);
+
+    private long[] hashes = new long[0];
+    // 槽位中保存行号+1 0表示空槽
+    private int[] slots = new int[0];
+    private boolean[] overwritten = new boolean[0];
+    private int[] rows = new int[0];
+
+    public static VidDeduplicator local() {
+        return LOCAL.get();
+    }
+
+    // 返回去重后保留的行数 保留的行号按原顺序存放在rows()的前count个位置
+    public int dedupe(WritePlan plan, List<Record> records) {
+        int n = records.size();
+        int capacity = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+        if (slots.length < capacity) {
+            hashes = new long[capacity];
+            slots = new int[capacity];
+        } else {
+            Arrays.fill(slots, 0, capacity, 0);
+        }
+        if (overwritten.length < n) {
+            overwritten = new boolean[n];
+            rows = new int[n];
+        } else {
+            Arrays.fill(overwritten, 0, n, false);
+        }
+        int mask = capacity - 1;
+        for (int row = 0; row < n; row++) {
+            Record record = records.get(row);
+            if (plan.hasNullKey(record)) {
+                continue;
+            }
+            long hash = plan.keyHash(record);
+            int idx = (int) (hash ^ (hash >>> 32)) & mask;
+            while (true) {
+                int slot = slots[idx];
+                if (slot == 0) {
+                    hashes[idx] = hash;
+                    slots[idx] = row + 1;
+                    break;
+                }
+                if (hashes[idx] == hash && plan.sameKey(records.get(slot - 1), record)) {
+                    // 后写覆盖先写
+                    overwritten[slot - 1] = true;
+                    slots[idx] = row + 1;
+                    break;
+                }
+                idx = (idx + 1) & mask;
+            }
+        }
+        int count = 0;
+        for (int row = 0; row < n; row++) {
+            if (!overwritten[row]) rows[count++] = row;
+        }
+        return count;
+    }
+
+    public int[] rows() {
+        return rows;
+    }
+
+    // 64位FNV-1a并做一次位混合
+    static long hash(long seed, String value) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
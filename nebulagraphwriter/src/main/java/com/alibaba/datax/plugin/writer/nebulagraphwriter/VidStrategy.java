@@ -0,0 +1,124 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.util.Configuration;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * VID生成策略
+ * string: 按模板生成字符串VID, 默认模板{tag}_{value}即tag名加下划线加主键值, 适用于FIXED_STRING(N)的图空间;
+ * int64: 直接使用数值型主键作为INT64 VID;
+ * hash: 将按模板生成的字符串交给graphd的hash()函数转换为INT64 VID.
+ * 点的VID与边的起点、终点VID使用同一策略, 模板中的{tag}分别替换为tag、srcTag和dstTag, 前后缀在编译时确定
+ */
+public class VidStrategy {
+
+    public enum Type {
+        STRING, INT64, HASH
+    }
+
+    public static final String DEFAULT_TEMPLATE = "{tag}_{value}";
+    public static final VidStrategy DEFAULT = new VidStrategy(Type.STRING, DEFAULT_TEMPLATE);
+
+    private static final String TAG = "{tag}";
+    private static final String VALUE = "{value}";
+
+    final Type type;
+    final String template;
+
+    public VidStrategy(Type type, String template) {
+        this.type = type;
+        this.template = template;
+    }
+
+    public static VidStrategy fromConfiguration(Configuration conf) {
+        String vidType = conf.getString(Key.VID_TYPE, "string");
+        Type type;
+        try {
+            type = Type.valueOf(vidType.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    "Parameter [" + Key.VID_TYPE + "] should be one of string, int64, hash, but got " + vidType);
+        }
+        String template = conf.getString(Key.VID_TEMPLATE, DEFAULT_TEMPLATE);
+        int valueAt = template.indexOf(VALUE);
+        if (valueAt < 0 || template.indexOf(VALUE, valueAt + 1) >= 0) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    "Parameter [" + Key.VID_TEMPLATE + "] should contain " + VALUE + " exactly once, but got " + template);
+        }
+        return new VidStrategy(type, template);
+    }
+
+    // 编译某个tag的VID编码器
+    public Encoder forTag(String tag) {
+        String resolved = template.replace(TAG, tag);
+        int valueAt = resolved.indexOf(VALUE);
+        return new Encoder(type, resolved.substring(0, valueAt), resolved.substring(valueAt + VALUE.length()));
+    }
+
+    public static class Encoder {
+        final Type type;
+        final String prefix;
+        final String suffix;
+
+        Encoder(Type type, String prefix, String suffix) {
+            this.type = type;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        // "player_a" / 1001 / hash("player_a")
+        public void append(StatementBuilder sb, Column column) {
+            switch (type) {
+                case INT64:
+                    sb.appendLong(column.asLong());
+                    break;
+                case HASH:
+                    sb.append("hash(").appendVid(prefix, column.asString(), suffix).append(')');
+                    break;
+                default:
+                    sb.appendVid(prefix, column.asString(), suffix);
+            }
+        }
+
+        // 用于路由的VID 与写入的VID一一对应
+        public String routingKey(Column column) {
+            if (type == Type.INT64) {
+                return String.valueOf(column.asLong());
+            }
+            return prefix + column.asString() + suffix;
+        }
+
+        // 存储层key中的VID: INT64为小端序的8字节 字符串VID为UTF-8字节(由编码器补齐到vid长度)
+        public byte[] vidBytes(Column column) {
+            switch (type) {
+                case INT64:
+                    return littleEndian(column.asLong());
+                case HASH:
+                    return littleEndian(NebulaPartitioner.hash(routingKey(column)));
+                default:
+                    return routingKey(column).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        private static byte[] littleEndian(long value) {
+            return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array();
+        }
+
+        // VID所在的分片
+        public int partId(NebulaPartitioner partitioner, Column column) {
+            switch (type) {
+                case INT64:
+                    return partitioner.partId(column.asLong());
+                case HASH:
+                    return partitioner.partId(NebulaPartitioner.hash(routingKey(column)));
+                default:
+                    return partitioner.partId(routingKey(column));
+            }
+        }
+    }
+}
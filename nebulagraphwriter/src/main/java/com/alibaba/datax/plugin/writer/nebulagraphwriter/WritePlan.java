@@ -0,0 +1,319 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个Tag/EdgeType的写入计划
+ * 根据ColumnMeta和column配置编译一次: 属性到record下标的投影以及按NebulaGraph字段类型选定的编码器,
+ * 写入时逐行按下标取值编码, 不再进行字段查找和类型字符串比较
+ */
+public class WritePlan {
+
+    // 字段值编码器 将record中的值编码为nGQL字面量
+    public interface ValueEncoder {
+        void encode(StatementBuilder sb, Column column);
+    }
+
+    final String table;
+    final TableType tableType;
+    // INSERT VERTEX player(name,age) VALUES
+    final String header;
+    // 第i个属性对应record中的下标及编码器
+    final int[] projection;
+    final ValueEncoder[] encoders;
+    // 按schema顺序的属性元信息 与projection一一对应
+    final List<ColumnMeta> properties;
+
+    // Tag: VID由第一个属性按VidStrategy生成 默认为table_value
+    final int vidIndex;
+    final VidStrategy.Encoder vid;
+
+    // EdgeType: 起点和终点VID 默认为srcTag_value -> dstTag_value
+    final int srcIndex;
+    final VidStrategy.Encoder src;
+    final int dstIndex;
+    final VidStrategy.Encoder dst;
+    // EdgeType: edgeType中rankKey对应的下标 未配置时为-1 rank均为0
+    final int rankIndex;
+
+    private WritePlan(String table, TableType tableType, String header, int[] projection, ValueEncoder[] encoders,
+                      List<ColumnMeta> properties, int vidIndex, VidStrategy.Encoder vid, int srcIndex, VidStrategy.Encoder src,
+                      int dstIndex, VidStrategy.Encoder dst, int rankIndex) {
+        this.table = table;
+        this.tableType = tableType;
+        this.header = header;
+        this.projection = projection;
+        this.encoders = encoders;
+        this.properties = properties;
+        this.vidIndex = vidIndex;
+        this.vid = vid;
+        this.srcIndex = srcIndex;
+        this.src = src;
+        this.dstIndex = dstIndex;
+        this.dst = dst;
+        this.rankIndex = rankIndex;
+    }
+
+    public static WritePlan compileTag(String table, List<ColumnMeta> colMetas, List<String> columns) {
+        return compileTag(table, colMetas, columns, VidStrategy.DEFAULT);
+    }
+
+    public static WritePlan compileTag(String table, List<ColumnMeta> colMetas, List<String> columns,
+                                       VidStrategy vidStrategy) {
+        Map<String, Integer> columnIndex = indexColumns(columns);
+        List<ColumnMeta> projected = project(colMetas, columnIndex);
+        if (projected.isEmpty()) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    "None of columns " + columns + " belongs to tag " + table);
+        }
+        int[] projection = projection(projected, columnIndex);
+        return new WritePlan(table, TableType.TAG, header("INSERT VERTEX ", table, projected),
+                projection, encoders(projected), projected, projection[0], vidStrategy.forTag(table), -1, null, -1, null, -1);
+    }
+
+    public static WritePlan compileEdge(String table, List<ColumnMeta> colMetas, List<String> columns, JSONObject edgeType) {
+        return compileEdge(table, colMetas, columns, edgeType, VidStrategy.DEFAULT);
+    }
+
+    public static WritePlan compileEdge(String table, List<ColumnMeta> colMetas, List<String> columns, JSONObject edgeType,
+                                        VidStrategy vidStrategy) {
+        Map<String, Integer> columnIndex = indexColumns(columns);
+        List<ColumnMeta> projected = project(colMetas, columnIndex);
+        int srcIndex = requireColumn(columnIndex, edgeType.getString("srcPrimaryKey"), columns);
+        int dstIndex = requireColumn(columnIndex, edgeType.getString("dstPrimaryKey"), columns);
+        String rankKey = edgeType.getString("rankKey");
+        int rankIndex = rankKey == null ? -1 : requireColumn(columnIndex, rankKey, columns);
+        return new WritePlan(table, TableType.EDGE_TYPE, header("INSERT EDGE ", table, projected),
+                projection(projected, columnIndex), encoders(projected), projected, -1, null,
+                srcIndex, vidStrategy.forTag(edgeType.getString("srcTag")),
+                dstIndex, vidStrategy.forTag(edgeType.getString("dstTag")), rankIndex);
+    }
+
+    // 按配置中的表顺序编译所有表的写入计划 边按出现顺序对应edgeType配置
+    public static Map<String, WritePlan> compileAll(List<String> tables, Map<String, TableMeta> tableMetas,
+                                                    Map<String, List<ColumnMeta>> columnMetas, List<String> columns,
+                                                    List<JSONObject> edgeTypes, VidStrategy vidStrategy) {
+        Map<String, WritePlan> plans = new HashMap<>();
+        int edgeNo = 0;
+        for (String table : tables) {
+            TableMeta tableMeta = tableMetas.get(table);
+            List<ColumnMeta> colMetas = columnMetas.getOrDefault(table, Collections.emptyList());
+            if (tableMeta.tableType == TableType.TAG) {
+                plans.put(table, compileTag(table, colMetas, columns, vidStrategy));
+            } else {
+                plans.put(table, compileEdge(table, colMetas, columns, edgeTypes.get(edgeNo++), vidStrategy));
+            }
+        }
+        return plans;
+    }
+
+    // insert vertex player(name, age) values "player_Lim Kee":("Lim Kee", 23)
+    public void appendVertex(StatementBuilder sb, Record record) {
+        vid.append(sb, vidColumn(record));
+        sb.append(':');
+        appendProperties(sb, record);
+    }
+
+    // insert edge follow(degree) values "player_a"->"player_b":(val) / "player_a"->"player_b"@1:(val)
+    public void appendEdge(StatementBuilder sb, Record record) {
+        src.append(sb, srcColumn(record));
+        sb.append("->");
+        dst.append(sb, dstColumn(record));
+        if (rankIndex >= 0) {
+            sb.append('@');
+            sb.appendLong(rank(record));
+        }
+        sb.append(':');
+        appendProperties(sb, record);
+    }
+
+    // 点的VID 边则为起点VID(边与起点存储在一起)
+    public String routingVid(Record record) {
+        if (tableType == TableType.EDGE_TYPE) {
+            return src.routingKey(record.getColumn(srcIndex));
+        }
+        return vid.routingKey(record.getColumn(vidIndex));
+    }
+
+    // 写入的分片 边按起点所在的分片
+    public int partId(NebulaPartitioner partitioner, Record record) {
+        if (tableType == TableType.EDGE_TYPE) {
+            return src.partId(partitioner, record.getColumn(srcIndex));
+        }
+        return vid.partId(partitioner, record.getColumn(vidIndex));
+    }
+
+    // 边的rank 未配置rankKey时为0
+    public long rank(Record record) {
+        if (rankIndex < 0) {
+            return 0L;
+        }
+        Column column = record.getColumn(rankIndex);
+        if (isNull(column)) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    "Rank of edge " + table + " must not be null");
+        }
+        return column.asLong();
+    }
+
+    // 点的VID列及边的起点、终点列 为空时抛出 该记录经二分定位作为脏数据
+    Column vidColumn(Record record) {
+        return keyColumn(record, vidIndex, "VID of tag ");
+    }
+
+    Column srcColumn(Record record) {
+        return keyColumn(record, srcIndex, "Source VID of edge ");
+    }
+
+    Column dstColumn(Record record) {
+        return keyColumn(record, dstIndex, "Destination VID of edge ");
+    }
+
+    private Column keyColumn(Record record, int index, String name) {
+        Column column = record.getColumn(index);
+        if (isNull(column)) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.ILLEGAL_VALUE,
+                    name + table + " must not be null");
+        }
+        return column;
+    }
+
+    // VID、起点、终点或rank为空 此类记录不参与去重 写入时作为脏数据
+    boolean hasNullKey(Record record) {
+        if (tableType == TableType.EDGE_TYPE) {
+            return isNull(record.getColumn(srcIndex)) || isNull(record.getColumn(dstIndex))
+                    || rankIndex >= 0 && isNull(record.getColumn(rankIndex));
+        }
+        return isNull(record.getColumn(vidIndex));
+    }
+
+    // 批次内去重的键 点为VID 边为(起点, 终点, rank) VID为按VidStrategy生成的值
+    long keyHash(Record record) {
+        if (tableType == TableType.EDGE_TYPE) {
+            long h = VidDeduplicator.hash(0xcbf29ce484222325L, src.routingKey(srcColumn(record)));
+            h = VidDeduplicator.hash(h, dst.routingKey(dstColumn(record)));
+            return rankIndex < 0 ? h : VidDeduplicator.hash(h, String.valueOf(rank(record)));
+        }
+        return VidDeduplicator.hash(0xcbf29ce484222325L, vid.routingKey(vidColumn(record)));
+    }
+
+    boolean sameKey(Record a, Record b) {
+        if (tableType == TableType.EDGE_TYPE) {
+            return src.routingKey(srcColumn(a)).equals(src.routingKey(srcColumn(b)))
+                    && dst.routingKey(dstColumn(a)).equals(dst.routingKey(dstColumn(b)))
+                    && rank(a) == rank(b);
+        }
+        return vid.routingKey(vidColumn(a)).equals(vid.routingKey(vidColumn(b)));
+    }
+
+    private void appendProperties(StatementBuilder sb, Record record) {
+        sb.append('(');
+        for (int i = 0; i < projection.length; i++) {
+            if (i > 0) sb.append(',');
+            encoders[i].encode(sb, record.getColumn(projection[i]));
+        }
+        sb.append(')');
+    }
+
+    private static Map<String, Integer> indexColumns(List<String> columns) {
+        Map<String, Integer> columnIndex = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndex.putIfAbsent(columns.get(i), i);
+        }
+        return columnIndex;
+    }
+
+    // 按schema顺序保留column中配置了的属性
+    private static List<ColumnMeta> project(List<ColumnMeta> colMetas, Map<String, Integer> columnIndex) {
+        List<ColumnMeta> projected = new ArrayList<>();
+        for (ColumnMeta colMeta : colMetas) {
+            if (columnIndex.containsKey(colMeta.field)) projected.add(colMeta);
+        }
+        return projected;
+    }
+
+    private static int[] projection(List<ColumnMeta> projected, Map<String, Integer> columnIndex) {
+        int[] projection = new int[projected.size()];
+        for (int i = 0; i < projected.size(); i++) {
+            projection[i] = columnIndex.get(projected.get(i).field);
+        }
+        return projection;
+    }
+
+    private static ValueEncoder[] encoders(List<ColumnMeta> projected) {
+        ValueEncoder[] encoders = new ValueEncoder[projected.size()];
+        for (int i = 0; i < projected.size(); i++) {
+            encoders[i] = encoderOf(projected.get(i).type);
+        }
+        return encoders;
+    }
+
+    private static String header(String insert, String table, List<ColumnMeta> projected) {
+        StringBuilder sb = new StringBuilder(insert).append(table).append(" (");
+        for (int i = 0; i < projected.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(projected.get(i).field);
+        }
+        return sb.append(") VALUES ").toString();
+    }
+
+    private static int requireColumn(Map<String, Integer> columnIndex, String field, List<String> columns) {
+        Integer idx = columnIndex.get(field);
+        if (idx == null) {
+            throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION,
+                    "Cannot find col: " + field + " in columns: " + columns);
+        }
+        return idx;
+    }
+
+    // 根据NebulaGraph字段类型选择编码器 如int64, fixed_string(30), datetime
+    static ValueEncoder encoderOf(String nebulaType) {
+        String type = nebulaType == null ? "" : nebulaType.toLowerCase();
+        if (type.startsWith("int")) {
+            return (sb, column) -> {
+                if (isNull(column)) sb.appendNull();
+                else sb.appendLong(column.asLong());
+            };
+        }
+        switch (type) {
+            case "double":
+            case "float":
+                return (sb, column) -> {
+                    if (isNull(column)) sb.appendNull();
+                    else sb.appendDouble(column.asDouble());
+                };
+            case "bool":
+                return (sb, column) -> {
+                    if (isNull(column)) sb.appendNull();
+                    else sb.appendBool(column.asBoolean());
+                };
+            case "date":
+            case "time":
+            case "datetime":
+                return (sb, column) -> {
+                    if (isNull(column)) sb.appendNull();
+                    else sb.appendTemporal(type, column);
+                };
+            default:
+                // string, fixed_string(N)及其他类型按字符串写入
+                return (sb, column) -> {
+                    if (isNull(column)) sb.appendNull();
+                    else sb.appendString(column.asString());
+                };
+        }
+    }
+
+    private static boolean isNull(Column column) {
+        return column == null || column.getRawData() == null
+                || column.getType() == Column.Type.NULL || column.getType() == Column.Type.BAD;
+    }
+}
@@ -0,0 +1,97 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 异步写入线程: 从有界队列中取出批次并写入NebulaGraph
+ * 接收端线程只负责从reader拉取record并组装批次, nGQL的构建与graphd的往返均在该线程中完成,
+ * 队列容量即为允许同时在途(已提交但未写完)的批次数, 队列满时接收端阻塞以形成背压
+ */
+public class WriteWorker implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteWorker.class);
+
+    // 结束标记 接收端数据读取完毕后放入队列
+    private static final List<Record> END_OF_STREAM = new ArrayList<>(0);
+
+    // 批次的实际写入逻辑 由DataHandler提供
+    public interface BatchConsumer {
+        int accept(List<Record> batch) throws Exception;
+    }
+
+    private final BlockingQueue<List<Record>> queue;
+    private final BatchConsumer consumer;
+    private final Thread thread;
+
+    private volatile Throwable error;
+    private long affectedRows;
+
+    public WriteWorker(String name, int maxInFlightBatches, BatchConsumer consumer) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, maxInFlightBatches));
+        this.consumer = consumer;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // 提交一个批次 队列已满时阻塞等待
+    public void submit(List<Record> batch) throws InterruptedException {
+        checkError();
+        queue.put(batch);
+    }
+
+    // 通知写入线程结束并等待队列中剩余批次写完, 返回写入成功的行数
+    public long finish() throws InterruptedException {
+        if (thread.isAlive()) {
+            queue.put(END_OF_STREAM);
+            thread.join();
+        }
+        checkError();
+        return affectedRows;
+    }
+
+    // 异常退出时中断写入线程 丢弃尚未写入的批次, 并等待其退出
+    // 返回false表示写入线程在timeoutMillis内未退出 其会话可能仍在执行语句
+    public boolean abort(long timeoutMillis) {
+        queue.clear();
+        thread.interrupt();
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<Record> batch;
+            while ((batch = queue.take()) != END_OF_STREAM) {
+                affectedRows += consumer.accept(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            LOG.error(thread.getName() + " stopped due to: " + e.getMessage(), e);
+            this.error = e;
+            // 清空队列 避免接收端在put上永久阻塞
+            queue.clear();
+        }
+    }
+
+    private void checkError() {
+        if (error != null) {
+            throw new IllegalStateException(thread.getName() + " failed: " + error.getMessage(), error);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.plugin.TaskPluginCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * writer端写入指标
+ * 按表统计写入行数、发送字节数和语句执行耗时, 并统计等待reader的时间、语句构建时间、重试、二分拆分、
+ * 脏数据及去重行数, 用于判断任务的瓶颈在数据源、语句构建还是graphd; 定期输出汇总日志, 结束时上报给DataX.
+ * 多个表合并为一次请求时, 请求的执行耗时无法拆分到各表, 单独记录在combined中
+ */
+public class WriterMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(WriterMetrics.class);
+
+    public static class TableStats {
+        final LongAdder rows = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LatencyHistogram executeLatency = new LatencyHistogram();
+    }
+
+    private final Map<String, TableStats> tables = new ConcurrentHashMap<>();
+    // 合并请求的执行耗时 行数和字节数仍计入各表
+    private final TableStats combined = new TableStats();
+    final LongAdder readWaitNanos = new LongAdder();
+    final LongAdder buildNanos = new LongAdder();
+    final LongAdder retries = new LongAdder();
+    final LongAdder bisectSplits = new LongAdder();
+    final LongAdder dirtyRows = new LongAdder();
+    final LongAdder dedupedRows = new LongAdder();
+    final LongAdder spooledRows = new LongAdder();
+    final LongAdder replayedRows = new LongAdder();
+
+    private final long startNanos = System.nanoTime();
+    private final long intervalNanos;
+    private volatile long lastLogNanos = startNanos;
+
+    public WriterMetrics(long intervalSec) {
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSec);
+    }
+
+    public TableStats table(String table) {
+        return tables.computeIfAbsent(table, t -> new TableStats());
+    }
+
+    public TableStats combined() {
+        return combined;
+    }
+
+    // 距上次输出超过间隔时输出一次汇总日志
+    public void maybeLog() {
+        long now = System.nanoTime();
+        if (intervalNanos > 0 && now - lastLogNanos >= intervalNanos) {
+            lastLogNanos = now;
+            LOG.info(summary());
+        }
+    }
+
+    public String summary() {
+        double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+        StringBuilder sb = new StringBuilder("NebulaGraphWriter metrics in ")
+                .append(String.format("%.1f", seconds)).append("s:");
+        for (Map.Entry<String, TableStats> entry : tables.entrySet()) {
+            TableStats stats = entry.getValue();
+            LatencyHistogram latency = stats.executeLatency;
+            sb.append(" [").append(entry.getKey())
+                    .append(" rows=").append(stats.rows.sum())
+                    .append(" rows/s=").append(String.format("%.1f", stats.rows.sum() / seconds))
+                    .append(" bytes=").append(stats.bytes.sum())
+                    .append(" statements=").append(latency.count())
+                    .append(" execute(ms) p50=").append(millis(latency.percentileMicros(0.5)))
+                    .append(" p99=").append(millis(latency.percentileMicros(0.99)))
+                    .append(" max=").append(millis(latency.maxMicros()))
+                    .append(']');
+        }
+        LatencyHistogram combinedLatency = combined.executeLatency;
+        if (combinedLatency.count() > 0) {
+            sb.append(" [combined statements=").append(combinedLatency.count())
+                    .append(" execute(ms) p50=").append(millis(combinedLatency.percentileMicros(0.5)))
+                    .append(" p99=").append(millis(combinedLatency.percentileMicros(0.99)))
+                    .append(" max=").append(millis(combinedLatency.maxMicros()))
+                    .append(']');
+        }
+        sb.append(" readWait(ms)=").append(TimeUnit.NANOSECONDS.toMillis(readWaitNanos.sum()))
+                .append(" build(ms)=").append(TimeUnit.NANOSECONDS.toMillis(buildNanos.sum()))
+                .append(" retries=").append(retries.sum())
+                .append(" bisectSplits=").append(bisectSplits.sum())
+                .append(" dirtyRows=").append(dirtyRows.sum())
+                .append(" dedupedRows=").append(dedupedRows.sum())
+                .append(" spooledRows=").append(spooledRows.sum())
+                .append(" replayedRows=").append(replayedRows.sum());
+        return sb.toString();
+    }
+
+    // 通过TaskPluginCollector上报到DataX的Communication中
+    public void report(TaskPluginCollector collector) {
+        LOG.info(summary());
+        if (collector == null) {
+            return;
+        }
+        synchronized (collector) {
+            for (Map.Entry<String, TableStats> entry : tables.entrySet()) {
+                TableStats stats = entry.getValue();
+                String prefix = "nebula." + entry.getKey() + ".";
+                collector.collectMessage(prefix + "rows", String.valueOf(stats.rows.sum()));
+                collector.collectMessage(prefix + "bytes", String.valueOf(stats.bytes.sum()));
+                collector.collectMessage(prefix + "executeP50Ms", millis(stats.executeLatency.percentileMicros(0.5)));
+                collector.collectMessage(prefix + "executeP99Ms", millis(stats.executeLatency.percentileMicros(0.99)));
+                collector.collectMessage(prefix + "executeMaxMs", millis(stats.executeLatency.maxMicros()));
+            }
+            if (combined.executeLatency.count() > 0) {
+                collector.collectMessage("nebula.combined.statements", String.valueOf(combined.executeLatency.count()));
+                collector.collectMessage("nebula.combined.executeP50Ms",
+                        millis(combined.executeLatency.percentileMicros(0.5)));
+                collector.collectMessage("nebula.combined.executeP99Ms",
+                        millis(combined.executeLatency.percentileMicros(0.99)));
+                collector.collectMessage("nebula.combined.executeMaxMs", millis(combined.executeLatency.maxMicros()));
+            }
+            collector.collectMessage("nebula.readWaitMs",
+                    String.valueOf(TimeUnit.NANOSECONDS.toMillis(readWaitNanos.sum())));
+            collector.collectMessage("nebula.buildMs", String.valueOf(TimeUnit.NANOSECONDS.toMillis(buildNanos.sum())));
+            collector.collectMessage("nebula.retries", String.valueOf(retries.sum()));
+            collector.collectMessage("nebula.bisectSplits", String.valueOf(bisectSplits.sum()));
+            collector.collectMessage("nebula.dirtyRows", String.valueOf(dirtyRows.sum()));
+            collector.collectMessage("nebula.dedupedRows", String.valueOf(dedupedRows.sum()));
+            collector.collectMessage("nebula.spooledRows", String.valueOf(spooledRows.sum()));
+            collector.collectMessage("nebula.replayedRows", String.valueOf(replayedRows.sum()));
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.3f", micros / 1000.0);
+    }
+}
@@ -0,0 +1,43 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchControllerTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void fixedBatchSize() {
+        // given
+        AdaptiveBatchController controller = new AdaptiveBatchController(1000, false, 4000, 500);
+
+        // when
+        controller.onSuccess(1000, 10 * MS);
+        controller.onFailure();
+
+        // then & assert
+        Assert.assertEquals(1000, controller.batchSize());
+    }
+
+    @Test
+    public void additiveIncreaseMultiplicativeDecrease() {
+        // given
+        AdaptiveBatchController controller = new AdaptiveBatchController(1000, true, 1200, 500);
+
+        // when & then & assert
+        controller.onSuccess(1000, 10 * MS);
+        Assert.assertEquals(1100, controller.batchSize());
+        // 未满的批次不增长
+        controller.onSuccess(500, 10 * MS);
+        Assert.assertEquals(1100, controller.batchSize());
+        controller.onSuccess(1100, 10 * MS);
+        controller.onSuccess(1200, 10 * MS);
+        Assert.assertEquals(1200, controller.batchSize());
+        // 超过目标耗时减半
+        controller.onSuccess(1200, 800 * MS);
+        Assert.assertEquals(600, controller.batchSize());
+        controller.onFailure();
+        Assert.assertEquals(300, controller.batchSize());
+    }
+}
@@ -0,0 +1,217 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.BoolColumn;
+import com.alibaba.datax.common.element.BytesColumn;
+import com.alibaba.datax.common.element.DateColumn;
+import com.alibaba.datax.common.element.DoubleColumn;
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BatchSpoolTest {
+
+    @Test
+    public void replayUncommittedBatchesAfterRestart() throws Exception {
+        // given
+        File dir = Files.createTempDirectory("nebula-spool").toFile();
+        BatchSpool spool = new BatchSpool(dir, 1);
+        spool.append(batch(0, 3));
+        spool.append(batch(3, 2));
+        spool.append(batch(5, 4));
+        spool.commit(pending(spool).get(0));
+        spool.close();
+
+        // when
+        BatchSpool restarted = new BatchSpool(dir, 1);
+        List<BatchSpool.Batch> pending = pending(restarted);
+
+        // then & assert
+        Assert.assertEquals(2, restarted.size());
+        Assert.assertEquals(2, pending.size());
+        Assert.assertEquals(2, pending.get(0).records.size());
+        Assert.assertEquals(3L, (long) pending.get(0).records.get(0).getColumn(0).asLong());
+        Assert.assertEquals(4, pending.get(1).records.size());
+        // 全部提交后删除分段
+        for (BatchSpool.Batch batch : pending) {
+            restarted.commit(batch);
+        }
+        restarted.close();
+        Assert.assertEquals(0, new BatchSpool(dir, 1).size());
+        Assert.assertEquals(0, dir.list().length);
+        dir.delete();
+    }
+
+    @Test
+    public void columnsRoundTrip() throws Exception {
+        // given
+        File dir = Files.createTempDirectory("nebula-spool").toFile();
+        BatchSpool spool = new BatchSpool(dir, 1024 * 1024);
+        Record record = new DefaultRecord();
+        record.addColumn(new LongColumn("123456789012345678901234567890"));
+        record.addColumn(new DoubleColumn("1.25"));
+        record.addColumn(new StringColumn("a \"quoted\"\nline"));
+        record.addColumn(new BoolColumn(true));
+        DateColumn date = new DateColumn(1650000000123L);
+        date.setSubType(DateColumn.DateType.DATE);
+        record.addColumn(date);
+        record.addColumn(new BytesColumn(new byte[]{1, 2, 3}));
+        record.addColumn(new StringColumn(null));
+
+        // when
+        spool.append(Arrays.asList(record));
+        Record restored = pending(spool).get(0).records.get(0);
+
+        // then & assert
+        Assert.assertEquals(7, restored.getColumnNumber());
+        Assert.assertEquals("123456789012345678901234567890", restored.getColumn(0).asBigInteger().toString());
+        Assert.assertEquals(1.25, restored.getColumn(1).asDouble(), 0);
+        Assert.assertEquals("a \"quoted\"\nline", restored.getColumn(2).asString());
+        Assert.assertTrue(restored.getColumn(3).asBoolean());
+        Assert.assertEquals(1650000000123L, (long) restored.getColumn(4).asLong());
+        Assert.assertEquals(DateColumn.DateType.DATE, ((DateColumn) restored.getColumn(4)).getSubType());
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, restored.getColumn(5).asBytes());
+        Assert.assertNull(restored.getColumn(6).getRawData());
+        spool.close();
+        delete(dir);
+    }
+
+    @Test
+    public void ignoreTornBatchAtTail() throws Exception {
+        // given
+        File dir = Files.createTempDirectory("nebula-spool").toFile();
+        BatchSpool spool = new BatchSpool(dir, 1024 * 1024);
+        spool.append(batch(0, 2));
+        spool.append(batch(2, 2));
+        spool.close();
+        File segment = dir.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // 模拟写入第二个批次时崩溃
+            file.setLength(file.length() - 5);
+        }
+
+        // when
+        List<BatchSpool.Batch> pending = pending(new BatchSpool(dir, 1024 * 1024));
+
+        // then & assert
+        Assert.assertEquals(1, pending.size());
+        Assert.assertEquals(2, pending.get(0).records.size());
+        delete(dir);
+    }
+
+    @Test
+    public void resumeAfterCommittedBatches() throws Exception {
+        // given
+        File dir = Files.createTempDirectory("nebula-spool").toFile();
+        BatchSpool spool = new BatchSpool(dir, 1024 * 1024);
+        spool.append(batch(0, 1));
+        spool.append(batch(1, 2));
+        spool.append(batch(3, 3));
+
+        // when
+        // 重放到第二个批次时集群仍不可用 不再读取之后的批次
+        try (BatchSpool.Pending pending = spool.pending()) {
+            spool.commit(pending.next());
+            Assert.assertEquals(2, pending.next().records.size());
+        }
+        BatchSpool.Batch next;
+        try (BatchSpool.Pending pending = spool.pending()) {
+            next = pending.next();
+            spool.commit(next);
+        }
+        spool.close();
+
+        // then & assert
+        Assert.assertEquals(1L, (long) next.records.get(0).getColumn(0).asLong());
+        BatchSpool restarted = new BatchSpool(dir, 1024 * 1024);
+        try (BatchSpool.Pending pending = restarted.pending()) {
+            Assert.assertEquals(3L, (long) pending.next().records.get(0).getColumn(0).asLong());
+            Assert.assertNull(pending.next());
+        }
+        restarted.close();
+        delete(dir);
+    }
+
+    @Test
+    public void distinguishBatchesOfPreviousRun() throws Exception {
+        // given
+        File dir = Files.createTempDirectory("nebula-spool").toFile();
+        BatchSpool spool = new BatchSpool(dir, 1024 * 1024);
+        spool.append(batch(0, 2));
+        spool.close();
+
+        // when
+        BatchSpool restarted = new BatchSpool(dir, 1024 * 1024);
+        restarted.append(batch(2, 3));
+        List<BatchSpool.Batch> pending = pending(restarted);
+
+        // then & assert
+        // 只有本次运行缓冲的批次计入本次写入的行数
+        Assert.assertEquals(2, pending.size());
+        Assert.assertTrue(pending.get(0).previousRun);
+        Assert.assertFalse(pending.get(1).previousRun);
+        restarted.close();
+        delete(dir);
+    }
+
+    @Test
+    public void findOrphanedTaskDirs() throws Exception {
+        // given
+        File root = Files.createTempDirectory("nebula-spool").toFile();
+        for (int task : new int[]{0, 2, 3, 10}) {
+            BatchSpool spool = new BatchSpool(BatchSpool.taskDir(root, task), 1024 * 1024);
+            // task-3全部提交 不再有分段文件
+            if (task != 3) spool.append(batch(0, 1));
+            spool.close();
+        }
+
+        // when
+        List<File> orphaned = BatchSpool.orphanedTaskDirs(root, 2);
+
+        // then & assert
+        Assert.assertEquals(Arrays.asList(BatchSpool.taskDir(root, 2), BatchSpool.taskDir(root, 10)), orphaned);
+        for (File dir : root.listFiles()) {
+            delete(dir);
+        }
+        root.delete();
+    }
+
+    // 读取全部未提交的批次
+    private static List<BatchSpool.Batch> pending(BatchSpool spool) throws Exception {
+        List<BatchSpool.Batch> batches = new ArrayList<>();
+        try (BatchSpool.Pending pending = spool.pending()) {
+            BatchSpool.Batch batch;
+            while ((batch = pending.next()) != null) {
+                batches.add(batch);
+            }
+        }
+        return batches;
+    }
+
+    private static List<Record> batch(int from, int size) {
+        List<Record> records = new ArrayList<>();
+        for (int i = from; i < from + size; i++) {
+            Record record = new DefaultRecord();
+            record.addColumn(new LongColumn(i));
+            record.addColumn(new StringColumn("name" + i));
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static void delete(File dir) {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+}
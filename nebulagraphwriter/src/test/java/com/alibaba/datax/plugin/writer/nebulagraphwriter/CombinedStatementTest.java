@@ -0,0 +1,118 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.plugin.TaskPluginCollector;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.columnMeta;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.receiver;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.tableMeta;
+
+public class CombinedStatementTest {
+
+    private final List<Record> recordList = Collections.singletonList(record("a", "b", 90));
+
+    @Test
+    public void oneRequestPerBatch() throws Exception {
+        // given
+        RecordingSession session = new RecordingSession(stmt -> false);
+
+        // when
+        int count = handler().writeBatch(session, recordList);
+
+        // then & assert
+        Assert.assertEquals(1, count);
+        Assert.assertEquals(1, session.statements.size());
+        Assert.assertEquals("INSERT VERTEX player (name) VALUES \"player_a\":(\"a\");"
+                + "INSERT EDGE follow (degree) VALUES \"player_a\"->\"player_b\":(90)", session.statements.get(0));
+    }
+
+    @Test
+    public void fallbackToTableByTable() {
+        // given
+        RecordingSession session = new RecordingSession(stmt -> stmt.contains("INSERT EDGE"));
+
+        // when
+        try {
+            handler().writeBatch(session, recordList);
+            Assert.fail();
+        } catch (Exception e) {
+            // then & assert
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Failed to write follow"));
+        }
+        Assert.assertEquals(3, session.statements.size());
+        Assert.assertTrue(session.statements.get(1).startsWith("INSERT VERTEX player"));
+        Assert.assertTrue(session.statements.get(2).startsWith("INSERT EDGE follow"));
+    }
+
+    @Test
+    public void reportCombinedLatencySeparately() {
+        // given
+        DefaultDataHandler handler = handler();
+        handler.setSessionPool(new RecordingSession.Factory(stmt -> false).acquire("combinedStatements-metrics"));
+        Map<String, String> messages = new HashMap<>();
+        TaskPluginCollector collector = new TaskPluginCollector() {
+            @Override
+            public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage) {
+            }
+
+            @Override
+            public void collectMessage(String key, String value) {
+                messages.put(key, value);
+            }
+        };
+
+        // when
+        handler.handle(receiver(recordList), collector);
+        handler.close();
+
+        // then & assert
+        // 合并请求的耗时不计入任何一个表 也不出现以表名列表命名的统计
+        Assert.assertEquals("1", messages.get("nebula.combined.statements"));
+        Assert.assertEquals("1", messages.get("nebula.player.rows"));
+        Assert.assertEquals("1", messages.get("nebula.follow.rows"));
+        for (String key : messages.keySet()) {
+            Assert.assertFalse(key, key.contains("["));
+        }
+    }
+
+    private DefaultDataHandler handler() {
+        Configuration conf = Configuration.from("{" +
+                "\"column\": [\"name\", \"dstPlayerName\", \"degree\"]," +
+                "\"table\":[\"player\", \"follow\"]," +
+                "\"edgeType\": [{\"srcTag\":\"player\",\"srcPrimaryKey\":\"name\"," +
+                "\"dstTag\":\"player\",\"dstPrimaryKey\":\"dstPlayerName\"}]," +
+                "\"jdbcUrl\":\"jdbc:nebula://cba\"," +
+                "\"combineStatements\": true" +
+                "}");
+        DefaultDataHandler handler = new DefaultDataHandler(conf, null);
+        Map<String, TableMeta> tableMetas = new HashMap<>();
+        tableMetas.put("player", tableMeta("player", TableType.TAG));
+        tableMetas.put("follow", tableMeta("follow", TableType.EDGE_TYPE));
+        Map<String, List<ColumnMeta>> columnMetas = new HashMap<>();
+        columnMetas.put("player", Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64")));
+        columnMetas.put("follow", Collections.singletonList(columnMeta("degree", "int64")));
+        handler.setTableMetas(tableMetas);
+        handler.setColumnMetas(columnMetas);
+        return handler;
+    }
+
+    private static Record record(String src, String dst, long degree) {
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn(src));
+        record.addColumn(new StringColumn(dst));
+        record.addColumn(new LongColumn(degree));
+        return record;
+    }
+}
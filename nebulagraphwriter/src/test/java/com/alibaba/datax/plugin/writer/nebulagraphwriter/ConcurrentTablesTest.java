@@ -0,0 +1,117 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.plugin.TaskPluginCollector;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.columnMeta;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.receiver;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.tableMeta;
+
+public class ConcurrentTablesTest {
+
+    private final List<Record> recordList = Arrays.asList(record("a", "b", 90), record("b", "c", 80));
+
+    @Test
+    public void eachTableOnItsOwnSession() {
+        // given
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> false);
+        NebulaSessionPool pool = factory.acquire("concurrentTables-success");
+        DefaultDataHandler handler = handler(null);
+        handler.setSessionPool(pool);
+
+        // when
+        long count = handler.handle(receiver(recordList), null);
+
+        // then & assert
+        Assert.assertEquals(2, count);
+        Assert.assertEquals(2, factory.opened.size());
+        Assert.assertTrue(factory.opened.get(0).statements.get(0).startsWith("INSERT VERTEX player"));
+        Assert.assertTrue(factory.opened.get(1).statements.get(0).startsWith("INSERT EDGE follow"));
+        // 所有会话均已归还 再次借出不会打开新会话
+        pool.borrowSession();
+        pool.borrowSession();
+        Assert.assertEquals(2, factory.opened.size());
+        handler.close();
+    }
+
+    @Test
+    public void reportFailuresPerTable() {
+        // given
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> true);
+        NebulaSessionPool pool = factory.acquire("concurrentTables-failure");
+        List<Throwable> causes = new ArrayList<>();
+        DefaultDataHandler handler = handler(collector(causes));
+        handler.setSessionPool(pool);
+
+        // when
+        long count = handler.handle(receiver(Collections.singletonList(recordList.get(0))), null);
+
+        // then & assert
+        Assert.assertEquals(0, count);
+        Assert.assertEquals(1, causes.size());
+        String message = causes.get(0).getMessage();
+        Assert.assertTrue(message, message.contains("[player]"));
+        Assert.assertTrue(message, message.contains("[follow]"));
+        Assert.assertEquals(2, causes.get(0).getSuppressed().length);
+        pool.borrowSession();
+        pool.borrowSession();
+        Assert.assertEquals(2, factory.opened.size());
+        handler.close();
+    }
+
+    private DefaultDataHandler handler(TaskPluginCollector collector) {
+        Configuration conf = Configuration.from("{" +
+                "\"column\": [\"name\", \"dstPlayerName\", \"degree\"]," +
+                "\"table\":[\"player\", \"follow\"]," +
+                "\"edgeType\": [{\"srcTag\":\"player\",\"srcPrimaryKey\":\"name\"," +
+                "\"dstTag\":\"player\",\"dstPrimaryKey\":\"dstPlayerName\"}]," +
+                "\"jdbcUrl\":\"jdbc:nebula://cba\"," +
+                "\"concurrentTables\": true" +
+                "}");
+        DefaultDataHandler handler = new DefaultDataHandler(conf, collector);
+        Map<String, TableMeta> tableMetas = new HashMap<>();
+        tableMetas.put("player", tableMeta("player", TableType.TAG));
+        tableMetas.put("follow", tableMeta("follow", TableType.EDGE_TYPE));
+        Map<String, List<ColumnMeta>> columnMetas = new HashMap<>();
+        columnMetas.put("player", Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64")));
+        columnMetas.put("follow", Collections.singletonList(columnMeta("degree", "int64")));
+        handler.setTableMetas(tableMetas);
+        handler.setColumnMetas(columnMetas);
+        return handler;
+    }
+
+    // 记录脏数据的失败原因
+    private static TaskPluginCollector collector(List<Throwable> causes) {
+        return new TaskPluginCollector() {
+            @Override
+            public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage) {
+                causes.add(t);
+            }
+
+            @Override
+            public void collectMessage(String key, String value) {
+            }
+        };
+    }
+
+    private static Record record(String src, String dst, long degree) {
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn(src));
+        record.addColumn(new StringColumn(dst));
+        record.addColumn(new LongColumn(degree));
+        return record;
+    }
+}
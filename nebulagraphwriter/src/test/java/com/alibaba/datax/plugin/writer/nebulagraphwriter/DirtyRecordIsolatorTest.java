@@ -0,0 +1,46 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class DirtyRecordIsolatorTest {
+
+    @Test
+    public void isolateDirtyRecords() throws Exception {
+        // given
+        List<Record> batch = IntStream.range(0, 1000).mapToObj(i -> {
+            Record record = new DefaultRecord();
+            record.addColumn(new LongColumn(i));
+            return record;
+        }).collect(Collectors.toList());
+        List<Long> dirty = new ArrayList<>();
+        int[] statements = {0};
+        DirtyRecordIsolator isolator = new DirtyRecordIsolator(records -> {
+            statements[0]++;
+            for (Record record : records) {
+                long id = record.getColumn(0).asLong();
+                if (id == 17 || id == 600) throw new IllegalArgumentException("bad row " + id);
+            }
+            return records.size();
+        }, (record, cause) -> dirty.add(record.getColumn(0).asLong()));
+
+        // when
+        int affectedRows = isolator.isolate(batch, new IllegalArgumentException("batch failed"));
+
+        // then & assert
+        Assert.assertEquals(998, affectedRows);
+        Assert.assertEquals(2, dirty.size());
+        Assert.assertEquals(17L, (long) dirty.get(0));
+        Assert.assertEquals(600L, (long) dirty.get(1));
+        // 2条脏数据约需2·2·log2(1000)次写入 远少于逐行写入的1000次
+        Assert.assertTrue(statements[0] <= 40);
+    }
+}
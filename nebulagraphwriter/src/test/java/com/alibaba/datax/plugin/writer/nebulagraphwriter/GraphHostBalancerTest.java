@@ -0,0 +1,112 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.vesoft.nebula.client.graph.data.HostAddress;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GraphHostBalancerTest {
+
+    private static final HostAddress A = new HostAddress("192.168.8.1", 9669);
+    private static final HostAddress B = new HostAddress("192.168.8.2", 9669);
+    private static final HostAddress C = new HostAddress("192.168.8.3", 9669);
+    private static final List<HostAddress> HOSTS = Arrays.asList(A, B, C);
+
+    @Test
+    public void spreadSessions() {
+        // given
+        GraphHostBalancer balancer = new GraphHostBalancer(HOSTS, 2, 1000);
+
+        // when
+        Map<String, Integer> sessions = new HashMap<>();
+        for (int i = 0; i < 6; i++) {
+            sessions.merge(balancer.acquire().toString(), 1, Integer::sum);
+        }
+
+        // then & assert
+        Assert.assertEquals(3, sessions.size());
+        for (int count : sessions.values()) {
+            Assert.assertEquals(2, count);
+        }
+    }
+
+    @Test
+    public void preferFasterHost() {
+        // given
+        GraphHostBalancer balancer = new GraphHostBalancer(HOSTS, 2, 1000);
+        balancer.onSuccess(A, 50_000_000L);
+        balancer.onSuccess(B, 1_000_000L);
+        balancer.onSuccess(C, 50_000_000L);
+
+        // when
+        int onB = 0;
+        for (int i = 0; i < 10; i++) {
+            if (balancer.acquire().equals(B)) onB++;
+        }
+
+        // then & assert
+        Assert.assertTrue("sessions on the fast host: " + onB, onB >= 8);
+    }
+
+    @Test
+    public void ejectAndRecover() {
+        // given
+        AtomicLong now = new AtomicLong(0);
+        GraphHostBalancer balancer = new GraphHostBalancer(HOSTS, 2, 1000, now::get);
+
+        // when
+        balancer.onFailure(A);
+        Assert.assertFalse(balancer.isEjected(A));
+        balancer.onFailure(A);
+
+        // then & assert
+        Assert.assertTrue(balancer.isEjected(A));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(!balancer.acquire().equals(A));
+        }
+        // 摘除到期后重新参与选择
+        now.set(1000);
+        Assert.assertFalse(balancer.isEjected(A));
+        Assert.assertEquals(A, balancer.acquire());
+    }
+
+    @Test
+    public void chooseEarliestWhenAllEjected() {
+        // given
+        AtomicLong now = new AtomicLong(0);
+        GraphHostBalancer balancer = new GraphHostBalancer(Arrays.asList(A, B), 1, 1000, now::get);
+        balancer.onFailure(B);
+        now.set(10);
+        balancer.onFailure(A);
+
+        // when & then & assert
+        Assert.assertEquals(B, balancer.acquire());
+    }
+
+    @Test
+    public void relocate() {
+        // given
+        AtomicLong now = new AtomicLong(0);
+        GraphHostBalancer balancer = new GraphHostBalancer(Arrays.asList(A, B), 1, 1000, now::get);
+        HostAddress first = balancer.acquire();
+        HostAddress other = first.equals(A) ? B : A;
+
+        // 两个graphd耗时相近时不迁移
+        balancer.onSuccess(first, 2_000_000L);
+        balancer.onSuccess(other, 1_500_000L);
+        Assert.assertNull(balancer.relocate(first));
+
+        // 当前graphd被摘除时迁移到可用的graphd
+        balancer.onFailure(first);
+        Assert.assertEquals(other, balancer.relocate(first));
+
+        // 当前graphd恢复后 明显慢于其他graphd时迁移
+        balancer.onSuccess(first, 100_000_000L);
+        Assert.assertEquals(other, balancer.relocate(first));
+    }
+}
@@ -0,0 +1,37 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentiles() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // when
+        // 1ms~100ms各一次
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000L);
+        }
+
+        // then & assert
+        Assert.assertEquals(100, histogram.count());
+        Assert.assertEquals(100_000, histogram.maxMicros());
+        long p50 = histogram.percentileMicros(0.5);
+        long p99 = histogram.percentileMicros(0.99);
+        // 桶的相对误差不超过25%
+        Assert.assertTrue(String.valueOf(p50), p50 >= 50_000 && p50 <= 62_500);
+        Assert.assertTrue(String.valueOf(p99), p99 >= 99_000 && p99 <= 100_000);
+    }
+
+    @Test
+    public void bucketBounds() {
+        for (long micros : new long[]{0, 1, 3, 4, 5, 7, 8, 1000, 123456789L}) {
+            int index = LatencyHistogram.indexOf(micros);
+            Assert.assertTrue(LatencyHistogram.upperBoundOf(index) >= micros);
+            Assert.assertTrue(index == 0 || LatencyHistogram.upperBoundOf(index - 1) < micros);
+        }
+    }
+}
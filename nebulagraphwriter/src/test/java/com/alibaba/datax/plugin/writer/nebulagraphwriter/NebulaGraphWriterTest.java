@@ -1,5 +1,6 @@
 package com.alibaba.datax.plugin.writer.nebulagraphwriter;
 
+import com.alibaba.datax.common.exception.DataXException;
 import com.alibaba.datax.common.util.Configuration;
 import org.junit.Assert;
 import org.junit.Before;
@@ -47,6 +48,29 @@ public class NebulaGraphWriterTest {
         Assert.assertEquals("age", conf.getString("column[1]"));
     }
 
+    @Test
+    public void rejectRankKeyInParameterizedMode() {
+        // given
+        job.setPluginJobConf(Configuration.from("{" +
+                "\"username\": \"root\", \"password\": \"nebula\"," +
+                "\"column\": [\"src\", \"dst\", \"rank\"], \"writeMode\": \"parameterized\"," +
+                "\"connection\": [{\"table\":[\"follow\"], \"jdbcUrl\":\"jdbc:nebula://cba\"," +
+                "\"edgeType\": [{\"srcTag\":\"player\",\"srcPrimaryKey\":\"src\"," +
+                "\"dstTag\":\"player\",\"dstPrimaryKey\":\"dst\",\"rankKey\":\"rank\"}]}]" +
+                "}"));
+
+        // when
+        try {
+            job.init();
+            Assert.fail();
+        } catch (DataXException e) {
+            // then & assert
+            // 在Task运行前失败
+            Assert.assertEquals(NebulaGraphWriterErrorCode.ILLEGAL_VALUE, e.getErrorCode());
+            Assert.assertTrue(e.getMessage().contains("rankKey"));
+        }
+    }
+
     @Test
     public void jobSplit() {
         // when
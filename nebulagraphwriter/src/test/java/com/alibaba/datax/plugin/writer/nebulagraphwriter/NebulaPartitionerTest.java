@@ -0,0 +1,53 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+public class NebulaPartitionerTest {
+
+    @Test
+    public void eightByteVidUsedAsLittleEndianLong() {
+        // given
+        NebulaPartitioner partitioner = new NebulaPartitioner(10);
+        long raw = ByteBuffer.wrap("player_a".getBytes(StandardCharsets.UTF_8)).order(ByteOrder.LITTLE_ENDIAN).getLong();
+
+        // when
+        int partId = partitioner.partId("player_a");
+
+        // then & assert
+        Assert.assertEquals(Long.remainderUnsigned(raw, 10) + 1, partId);
+    }
+
+    @Test
+    public void int64VidUsesUnsignedModulo() {
+        // given
+        NebulaPartitioner partitioner = new NebulaPartitioner(10);
+
+        // when & then & assert
+        Assert.assertEquals(2, partitioner.partId(1001L));
+        // -1按无符号数为18446744073709551615
+        Assert.assertEquals(6, partitioner.partId(-1L));
+    }
+
+    @Test
+    public void otherLengthsHashedIntoRange() {
+        // given
+        NebulaPartitioner partitioner = new NebulaPartitioner(7);
+
+        // when & then & assert
+        for (int i = 0; i < 1000; i++) {
+            String vid = "player_" + i;
+            int partId = partitioner.partId(vid);
+            Assert.assertTrue(partId >= 1 && partId <= 7);
+            Assert.assertEquals(partId, partitioner.partId(vid));
+            if (vid.length() != 8) {
+                Assert.assertEquals(partitioner.partId(NebulaPartitioner.hash(vid)), partId);
+            }
+        }
+        Assert.assertTrue(NebulaPartitioner.hash("player_10") != NebulaPartitioner.hash("player_11"));
+    }
+}
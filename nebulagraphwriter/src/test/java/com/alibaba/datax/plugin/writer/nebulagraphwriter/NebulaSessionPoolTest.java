@@ -0,0 +1,138 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.exception.DataXException;
+import com.vesoft.nebula.client.graph.data.HostAddress;
+import com.vesoft.nebula.client.graph.net.Session;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class NebulaSessionPoolTest {
+
+    @Test
+    public void parseSpace() {
+        Assert.assertEquals("cba", NebulaSessionPool.parseSpace("jdbc:nebula://cba"));
+        Assert.assertEquals("cba", NebulaSessionPool.parseSpace("jdbc:nebula://cba?timeout=3000"));
+    }
+
+    @Test(expected = DataXException.class)
+    public void parseSpaceWithoutSpace() {
+        NebulaSessionPool.parseSpace("jdbc:nebula://");
+    }
+
+    @Test
+    public void parseAddresses() {
+        // when
+        List<HostAddress> addresses = NebulaSessionPool.parseAddresses(
+                Arrays.asList("127.0.0.1:9669", " 192.168.8.2:9669"));
+
+        // then & assert
+        Assert.assertEquals(2, addresses.size());
+        Assert.assertEquals("127.0.0.1", addresses.get(0).getHost());
+        Assert.assertEquals(9669, addresses.get(0).getPort());
+        Assert.assertEquals("192.168.8.2", addresses.get(1).getHost());
+    }
+
+    @Test(expected = DataXException.class)
+    public void parseIllegalAddress() {
+        NebulaSessionPool.parseAddresses(Collections.singletonList("127.0.0.1"));
+    }
+
+    @Test
+    public void shareUntilLastRelease() {
+        // given
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> false);
+        NebulaSessionPool first = factory.acquire("refCount");
+        NebulaSessionPool second = factory.acquire("refCount");
+        Session session = first.borrowSession();
+        first.returnSession(session);
+
+        // when
+        first.release();
+
+        // then & assert
+        // 仍有使用者时不关闭
+        Assert.assertSame(first, second);
+        Assert.assertSame(second, factory.acquire("refCount"));
+        Assert.assertEquals(0, factory.closed);
+        second.release();
+        second.release();
+        Assert.assertEquals(1, factory.closed);
+        Assert.assertTrue(factory.opened.get(0).released);
+        Assert.assertNotSame(first, factory.acquire("refCount"));
+    }
+
+    @Test
+    public void reuseIdleSession() {
+        // given
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> false);
+        NebulaSessionPool pool = factory.acquire("idle");
+
+        // when
+        pool.returnSession(pool.borrowSession());
+        Session reused = pool.borrowSession();
+
+        // then & assert
+        Assert.assertEquals(1, factory.opened.size());
+        Assert.assertSame(factory.opened.get(0), ((BalancedSession) reused).detach());
+        pool.release();
+    }
+
+    @Test
+    public void delegateToCurrentSession() throws Exception {
+        // given
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> false);
+        NebulaSessionPool pool = factory.acquire("delegate");
+        Session session = pool.borrowSession();
+
+        // when
+        String json = session.executeJson("SHOW HOSTS");
+
+        // then & assert
+        // 父类不持有连接 所有方法都作用于当前会话
+        Assert.assertEquals("{\"errors\":[{\"code\":0}]}", json);
+        Assert.assertEquals(Collections.singletonList("SHOW HOSTS"), factory.opened.get(0).statements);
+        Assert.assertTrue(session.ping());
+        Assert.assertTrue(session.pingSession());
+        Assert.assertEquals(RecordingSession.HOST, session.getGraphHost());
+        session.release();
+        Assert.assertTrue(factory.opened.get(0).released);
+        Assert.assertFalse(session.pingSession());
+        pool.release();
+    }
+
+    @Test
+    public void dropUnhealthyIdleSession() {
+        // given
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> false);
+        NebulaSessionPool pool = factory.acquire("unhealthy");
+        pool.returnSession(pool.borrowSession());
+        factory.opened.get(0).healthy = false;
+
+        // when
+        pool.borrowSession();
+
+        // then & assert
+        Assert.assertEquals(2, factory.opened.size());
+        Assert.assertTrue(factory.opened.get(0).released);
+        pool.release();
+    }
+
+    @Test
+    public void keyContainsCredentials() {
+        // given
+        List<HostAddress> addresses = Collections.singletonList(new HostAddress("127.0.0.1", 9669));
+
+        // when
+        String key = NebulaSessionPool.poolKey(addresses, "root", "nebula", "cba");
+
+        // then & assert
+        Assert.assertEquals(key, NebulaSessionPool.poolKey(addresses, "root", "nebula", "cba"));
+        Assert.assertFalse(key.equals(NebulaSessionPool.poolKey(addresses, "root", "wrong", "cba")));
+        // 不保存明文密码
+        Assert.assertFalse(key.contains("nebula"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import com.alibaba.fastjson.JSONObject;
+import com.vesoft.nebula.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.columnMeta;
+
+public class ParameterizedInsertTest {
+
+    @Test
+    public void bindVertices() {
+        // given
+        WritePlan plan = WritePlan.compileTag("player",
+                Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64")), Arrays.asList("age", "name"));
+        ParameterizedInsert insert = new ParameterizedInsert(plan, 0);
+        List<Record> records = Arrays.asList(record(new LongColumn(25), new StringColumn("a\"b")),
+                record(new LongColumn(30), new StringColumn("c")));
+
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        Map<String, Object> params = new HashMap<>();
+        insert.bind(sb, params, records, null, records.size());
+
+        // then & assert
+        Assert.assertEquals("INSERT VERTEX player (name,age) VALUES $t0_v0:($t0_p0_0,$t0_p0_1),"
+                + "$t0_v1:($t0_p1_0,$t0_p1_1)", sb.toString());
+        // 字符串按原值作为参数 无需转义
+        Assert.assertEquals("player_a\"b", params.get("t0_v0"));
+        Assert.assertEquals(Value.sVal("a\"b".getBytes(StandardCharsets.UTF_8)), params.get("t0_p0_0"));
+        Assert.assertEquals(Value.iVal(30L), params.get("t0_p1_1"));
+        Assert.assertEquals(6, params.size());
+        // 同一行数的模板只编译一次
+        Assert.assertSame(insert.template(2), insert.template(2));
+    }
+
+    @Test
+    public void keepRecentTemplatesOnly() {
+        // given
+        WritePlan plan = WritePlan.compileTag("player", Arrays.asList(columnMeta("name", "string")),
+                Arrays.asList("name"));
+        ParameterizedInsert insert = new ParameterizedInsert(plan, 0);
+        ParameterizedInsert.Template full = insert.template(1000);
+
+        // when
+        // 二分定位等产生的各种行数
+        for (int rows = 1; rows <= 100; rows++) {
+            insert.template(rows);
+            insert.template(1000);
+        }
+
+        // then & assert
+        Assert.assertEquals(Constants.MAX_PARAMETERIZED_TEMPLATES, insert.cachedTemplates());
+        // 频繁使用的满批模板不会被淘汰
+        Assert.assertSame(full, insert.template(1000));
+    }
+
+    @Test
+    public void bindEdgesWithSelectedRows() {
+        // given
+        JSONObject edgeType = JSONObject.parseObject("{\"srcTag\":\"player\",\"srcPrimaryKey\":\"src\"," +
+                "\"dstTag\":\"player\",\"dstPrimaryKey\":\"dst\"}");
+        WritePlan plan = WritePlan.compileEdge("follow", Arrays.asList(columnMeta("degree", "int64")),
+                Arrays.asList("src", "dst", "degree"), edgeType,
+                new VidStrategy(VidStrategy.Type.HASH, VidStrategy.DEFAULT_TEMPLATE));
+        ParameterizedInsert insert = new ParameterizedInsert(plan, 1);
+        List<Record> records = Arrays.asList(
+                record(new StringColumn("a"), new StringColumn("b"), new LongColumn(90)),
+                record(new StringColumn("b"), new StringColumn("c"), new LongColumn(80)));
+
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        Map<String, Object> params = new HashMap<>();
+        insert.bind(sb, params, records, new int[]{1}, 1);
+
+        // then & assert
+        Assert.assertEquals("INSERT EDGE follow (degree) VALUES hash($t1_s0)->hash($t1_d0):($t1_p0_0)", sb.toString());
+        Assert.assertEquals("player_b", params.get("t1_s0"));
+        Assert.assertEquals("player_c", params.get("t1_d0"));
+        Assert.assertEquals(Value.iVal(80L), params.get("t1_p0_0"));
+    }
+
+    private static Record record(Column... columns) {
+        Record record = new DefaultRecord();
+        for (Column column : columns) {
+            record.addColumn(column);
+        }
+        return record;
+    }
+}
@@ -0,0 +1,111 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.vesoft.nebula.ErrorCode;
+import com.vesoft.nebula.client.graph.data.HostAddress;
+import com.vesoft.nebula.client.graph.data.ResultSet;
+import com.vesoft.nebula.client.graph.net.AuthResult;
+import com.vesoft.nebula.client.graph.net.Session;
+import com.vesoft.nebula.graph.ExecutionResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 不连接graphd的会话 记录收到的语句, 满足failWhen的语句返回指定的错误 默认为语义错误
+ */
+public class RecordingSession extends Session {
+    static final HostAddress HOST = new HostAddress("127.0.0.1", 9669);
+
+    final List<String> statements = new ArrayList<>();
+    private final Predicate<String> failWhen;
+    private final ErrorCode errorCode;
+    private final String errorMessage;
+    boolean healthy = true;
+    boolean released;
+
+    public RecordingSession(Predicate<String> failWhen) {
+        this(failWhen, ErrorCode.E_SEMANTIC_ERROR, "Wrong value");
+    }
+
+    public RecordingSession(Predicate<String> failWhen, ErrorCode errorCode, String errorMessage) {
+        super(null, new AuthResult(0L, 0), null, false);
+        this.failWhen = failWhen;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public synchronized ResultSet execute(String stmt) {
+        statements.add(stmt);
+        if (failWhen.test(stmt)) {
+            ExecutionResponse response = new ExecutionResponse(errorCode, 0L);
+            response.setError_msg(errorMessage.getBytes(StandardCharsets.UTF_8));
+            return new ResultSet(response, 0);
+        }
+        return new ResultSet(new ExecutionResponse(ErrorCode.SUCCEEDED, 0L), 0);
+    }
+
+    @Override
+    public synchronized String executeJson(String stmt) {
+        statements.add(stmt);
+        return "{\"errors\":[{\"code\":0}]}";
+    }
+
+    @Override
+    public boolean ping() {
+        return healthy;
+    }
+
+    @Override
+    public boolean pingSession() {
+        return healthy;
+    }
+
+    @Override
+    public void release() {
+        released = true;
+    }
+
+    @Override
+    public HostAddress getGraphHost() {
+        return HOST;
+    }
+
+    // 供NebulaSessionPool使用 记录打开的所有会话
+    static class Factory implements NebulaSessionPool.SessionFactory {
+        final List<RecordingSession> opened = new ArrayList<>();
+        private final Predicate<String> failWhen;
+        private final ErrorCode errorCode;
+        private final String errorMessage;
+        int closed;
+
+        Factory(Predicate<String> failWhen) {
+            this(failWhen, ErrorCode.E_SEMANTIC_ERROR, "Wrong value");
+        }
+
+        Factory(Predicate<String> failWhen, ErrorCode errorCode, String errorMessage) {
+            this.failWhen = failWhen;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+        }
+
+        @Override
+        public synchronized Session open(HostAddress host) {
+            RecordingSession session = new RecordingSession(failWhen, errorCode, errorMessage);
+            opened.add(session);
+            return session;
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+
+        NebulaSessionPool acquire(String key) {
+            return NebulaSessionPool.acquire(key, Collections.singletonList(HOST), () -> this, 2, 1000);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.plugin.TaskPluginCollector;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import com.vesoft.nebula.ErrorCode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.columnMeta;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.receiver;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.tableMeta;
+
+public class RetryExecutorTest {
+
+    private final List<Record> batch = Collections.singletonList(new DefaultRecord());
+
+    @Test
+    public void classify() {
+        Assert.assertTrue(ErrorClassifier.isRetryable(ErrorCode.E_RPC_FAILURE.getValue(), null));
+        Assert.assertTrue(ErrorClassifier.isRetryable(ErrorCode.E_LEADER_CHANGED.getValue(), null));
+        Assert.assertFalse(ErrorClassifier.isRetryable(ErrorCode.E_SYNTAX_ERROR.getValue(), "RPC failure"));
+        // graphd包装的storaged错误
+        int executionError = ErrorCode.E_EXECUTION_ERROR.getValue();
+        Assert.assertTrue(ErrorClassifier.isRetryable(executionError,
+                "Storage Error: The leader has changed. Try again later"));
+        Assert.assertTrue(ErrorClassifier.isRetryable(executionError, "Storage Error: RPC failure, probably timeout."));
+        Assert.assertTrue(ErrorClassifier.isRetryable(executionError, "Storage Error: Part not found."));
+        Assert.assertTrue(ErrorClassifier.isRetryable(executionError,
+                "Storage Error: part: 3, error: E_RAFT_NOT_READY(-3511)."));
+        Assert.assertFalse(ErrorClassifier.isRetryable(executionError,
+                "Storage Error: part: 3, error: E_DATA_TYPE_MISMATCH(-3018)."));
+        Assert.assertFalse(ErrorClassifier.isRetryable(executionError, "Storage Error: Key not found."));
+        // 只识别storaged错误 其他执行错误按数据异常处理
+        Assert.assertFalse(ErrorClassifier.isRetryable(executionError, "Wrong vertex id type: 1"));
+        Assert.assertFalse(ErrorClassifier.isRetryable(executionError, null));
+        Assert.assertFalse(ErrorClassifier.isRetryable(new IllegalStateException("RPC failure, probably timeout")));
+    }
+
+    @Test
+    public void retryClusterError() throws Exception {
+        // given
+        RetryExecutor executor = new RetryExecutor(3, 1, 5, new CircuitBreaker(10, 10), () -> {});
+        int[] attempts = {0};
+
+        // when
+        int affectedRows = executor.execute(records -> {
+            if (++attempts[0] < 3) throw retryable();
+            return records.size();
+        }, batch);
+
+        // then & assert
+        Assert.assertEquals(1, affectedRows);
+        Assert.assertEquals(3, attempts[0]);
+    }
+
+    @Test
+    public void retryWrappedStorageError() {
+        // given
+        // 第一次写入时storaged发生leader切换 由graphd包装为E_EXECUTION_ERROR
+        int[] calls = {0};
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> calls[0]++ == 0,
+                ErrorCode.E_EXECUTION_ERROR, "Storage Error: The leader has changed. Try again later");
+        NebulaSessionPool pool = factory.acquire("retry-storage-error");
+        List<Record> dirty = new ArrayList<>();
+        DefaultDataHandler handler = new DefaultDataHandler(Configuration.from("{" +
+                "\"column\": [\"name\", \"age\"], \"table\":[\"player\"]," +
+                "\"jdbcUrl\":\"jdbc:nebula://cba\", \"retryBackoffMs\": 1, \"maxRetryBackoffMs\": 5" +
+                "}"), collector(dirty));
+        handler.setSessionPool(pool);
+        handler.setTableMetas(Collections.singletonMap("player", tableMeta("player", TableType.TAG)));
+        handler.setColumnMetas(Collections.singletonMap("player",
+                Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64"))));
+
+        // when
+        long count = handler.handle(receiver(Arrays.asList(player("a", 20), player("b", 30))), null);
+
+        // then & assert
+        // 整批重试 没有二分定位脏数据
+        Assert.assertEquals(2, count);
+        Assert.assertTrue(dirty.isEmpty());
+        List<String> statements = factory.opened.get(0).statements;
+        Assert.assertEquals(2, statements.size());
+        Assert.assertEquals(statements.get(0), statements.get(1));
+        handler.close();
+    }
+
+    @Test
+    public void reportMetricsWhenRetriesExhausted() {
+        // given
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> true,
+                ErrorCode.E_RPC_FAILURE, "RPC failure");
+        Map<String, String> messages = new HashMap<>();
+        DefaultDataHandler handler = new DefaultDataHandler(Configuration.from("{" +
+                "\"column\": [\"name\", \"age\"], \"table\":[\"player\"], \"jdbcUrl\":\"jdbc:nebula://cba\"," +
+                "\"maxRetries\": 2, \"retryBackoffMs\": 1, \"maxRetryBackoffMs\": 5" +
+                "}"), null);
+        handler.setSessionPool(factory.acquire("retry-exhausted-metrics"));
+        handler.setTableMetas(Collections.singletonMap("player", tableMeta("player", TableType.TAG)));
+        handler.setColumnMetas(Collections.singletonMap("player",
+                Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64"))));
+
+        // when
+        try {
+            handler.handle(receiver(Collections.singletonList(player("a", 20))), new TaskPluginCollector() {
+                @Override
+                public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage) {
+                }
+
+                @Override
+                public void collectMessage(String key, String value) {
+                    messages.put(key, value);
+                }
+            });
+            Assert.fail();
+        } catch (DataXException e) {
+            Assert.assertEquals(NebulaGraphWriterErrorCode.RETRYABLE_EXCEPTION, e.getErrorCode());
+        }
+        handler.close();
+
+        // then & assert
+        // 失败的运行同样上报统计
+        Assert.assertEquals("2", messages.get("nebula.retries"));
+        Assert.assertNotNull(messages.get("nebula.player.executeMaxMs"));
+    }
+
+    @Test
+    public void doNotRetryDataError() {
+        // given
+        RetryExecutor executor = new RetryExecutor(3, 1, 5, new CircuitBreaker(10, 10), () -> {});
+        int[] attempts = {0};
+
+        // when
+        try {
+            executor.execute(records -> {
+                attempts[0]++;
+                throw DataXException.asDataXException(NebulaGraphWriterErrorCode.RUNTIME_EXCEPTION, "bad value");
+            }, batch);
+            Assert.fail();
+        } catch (Exception e) {
+            // then & assert
+            Assert.assertFalse(ErrorClassifier.isRetryable(e));
+            Assert.assertEquals(1, attempts[0]);
+        }
+    }
+
+    @Test
+    public void openCircuitBreaker() throws Exception {
+        // given
+        CircuitBreaker breaker = new CircuitBreaker(2, 10_000);
+        RetryExecutor executor = new RetryExecutor(1, 1, 5, breaker, () -> {});
+
+        // when
+        try {
+            executor.execute(records -> {
+                throw retryable();
+            }, batch);
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(ErrorClassifier.isRetryable(e));
+        }
+
+        // then & assert
+        Assert.assertTrue(breaker.isOpen());
+        breaker.onSuccess();
+        Assert.assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void halfOpenAllowsSingleProbe() throws Exception {
+        // given
+        CircuitBreaker breaker = new CircuitBreaker(1, 200);
+        breaker.onFailure();
+        breaker.acquire();
+        boolean[] acquired = new boolean[1];
+        Thread waiter = new Thread(() -> {
+            try {
+                breaker.acquire();
+                acquired[0] = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // when
+        waiter.start();
+        waiter.join(50);
+
+        // then & assert
+        // 试探写入进行中 其余线程等待试探结果
+        Assert.assertFalse(acquired[0]);
+        Assert.assertTrue(breaker.isOpen());
+        breaker.onSuccess();
+        waiter.join(1000);
+        Assert.assertTrue(acquired[0]);
+        Assert.assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void backoffWithJitter() {
+        RetryExecutor executor = new RetryExecutor(10, 100, 1000, new CircuitBreaker(10, 10), () -> {});
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long expected = Math.min(1000, 100L << attempt);
+            long backoff = executor.backoffMillis(attempt);
+            Assert.assertTrue(backoff >= expected / 2 && backoff <= expected);
+        }
+    }
+
+    private static Record player(String name, long age) {
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn(name));
+        record.addColumn(new LongColumn(age));
+        return record;
+    }
+
+    private static TaskPluginCollector collector(List<Record> dirty) {
+        return new TaskPluginCollector() {
+            @Override
+            public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage) {
+                dirty.add(dirtyRecord);
+            }
+
+            @Override
+            public void collectMessage(String key, String value) {
+            }
+        };
+    }
+
+    private static DataXException retryable() {
+        return DataXException.asDataXException(NebulaGraphWriterErrorCode.RETRYABLE_EXCEPTION, "E_RPC_FAILURE");
+    }
+}
@@ -1,5 +1,6 @@
 package com.alibaba.datax.plugin.writer.nebulagraphwriter;
 
+import com.alibaba.datax.common.util.Configuration;
 import com.vesoft.nebula.client.graph.NebulaPoolConfig;
 import com.vesoft.nebula.client.graph.data.HostAddress;
 import com.vesoft.nebula.client.graph.exception.AuthFailedException;
@@ -16,6 +17,7 @@ import org.junit.Test;
 import java.io.UnsupportedEncodingException;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -79,4 +81,28 @@ public class SchemaManagerTest {
         List<ColumnMeta> player = columnMetaMap.get("player");
         Assert.assertEquals(2, player.size());
     }
+
+    @Test
+    public void schemaConfigurationRoundTrip() {
+        // given
+        SchemaManager schemaManager = new SchemaManager(session);
+        List<String> tables = Arrays.asList("player", "follow");
+        Map<String, TableMeta> tableMetaMap = schemaManager.loadTableMeta(tables);
+        Map<String, List<ColumnMeta>> columnMetaMap = schemaManager.loadColumnMeta(tables, tableMetaMap);
+
+        // when
+        Configuration conf = Configuration.newDefault();
+        SchemaManager.writeToConfiguration(conf, tables, tableMetaMap, columnMetaMap);
+        Map<String, TableMeta> tableMetas = new HashMap<>();
+        Map<String, List<ColumnMeta>> columnMetas = new HashMap<>();
+        boolean loaded = SchemaManager.readFromConfiguration(Configuration.from(conf.toJSON()), tableMetas, columnMetas);
+
+        // then & assert
+        Assert.assertTrue(loaded);
+        Assert.assertEquals(TableType.TAG, tableMetas.get("player").tableType);
+        Assert.assertEquals(TableType.EDGE_TYPE, tableMetas.get("follow").tableType);
+        Assert.assertEquals(columnMetaMap.get("player").size(), columnMetas.get("player").size());
+        Assert.assertEquals(columnMetaMap.get("player").get(0).field, columnMetas.get("player").get(0).field);
+        Assert.assertEquals(columnMetaMap.get("player").get(0).type, columnMetas.get("player").get(0).type);
+    }
 }
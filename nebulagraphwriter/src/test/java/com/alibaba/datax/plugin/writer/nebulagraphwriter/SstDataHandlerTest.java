@@ -0,0 +1,131 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.nullableColumnMeta;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.receiver;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.tableMeta;
+
+public class SstDataHandlerTest {
+
+    @Test
+    public void writePartitionSortedFiles() {
+        // given
+        Map<String, List<byte[]>> files = new HashMap<>();
+        SstDataHandler handler = new SstDataHandler(conf(), (file, entries) ->
+                files.put(file.getParentFile().getName() + File.separator + file.getName(), keys(entries)));
+        List<Record> records = Arrays.asList(record("a", "b", 90), record("b", "c", 80), record("a", "c", 70),
+                record("a", "b", 95));
+
+        // when
+        long count = handler.handle(receiver(records), null);
+
+        // then & assert
+        Assert.assertEquals(4, count);
+        int keys = 0;
+        for (Map.Entry<String, List<byte[]>> file : files.entrySet()) {
+            Assert.assertTrue(file.getKey(), file.getKey().endsWith("task-3.sst"));
+            int partId = Integer.parseInt(file.getKey().substring(0, file.getKey().indexOf(File.separatorChar)));
+            Assert.assertTrue(partId >= 1 && partId <= 4);
+            List<byte[]> sorted = file.getValue();
+            for (int i = 1; i < sorted.size(); i++) {
+                Assert.assertTrue(SstFileBuilder.compare(sorted.get(i - 1), sorted.get(i)) < 0);
+            }
+            keys += sorted.size();
+        }
+        // 点a、b 以及a->b、b->c、a->c的出边和入边 重复的a->b只保留一份
+        Assert.assertEquals(2 + 3 * 2, keys);
+    }
+
+    @Test
+    public void mergeSpilledRunsIntoOneFilePerPartition() throws Exception {
+        // given
+        File dir = Files.createTempDirectory("nebula-sst").toFile();
+        Map<String, List<byte[][]>> files = new HashMap<>();
+        SstFileBuilder builder = new SstFileBuilder(dir, "task-0", 2, 1, (file, entries) -> {
+            List<byte[][]> written = new ArrayList<>();
+            entries.forEachRemaining(written::add);
+            files.put(file.getParentFile().getName() + File.separator + file.getName(), written);
+        });
+
+        // when
+        // 缓冲上限为1字节 每次add都会溢写一个有序段
+        builder.add(1, new byte[]{3}, new byte[]{30});
+        builder.add(1, new byte[]{1}, new byte[]{10});
+        builder.add(2, new byte[]{2}, new byte[]{20});
+        builder.add(1, new byte[]{3}, new byte[]{31});
+        builder.finish();
+
+        // then & assert
+        Assert.assertEquals(2, builder.getFiles());
+        Assert.assertEquals(3, builder.getEntries());
+        List<byte[][]> part1 = files.get("1" + File.separator + "task-0.sst");
+        Assert.assertEquals(2, part1.size());
+        Assert.assertArrayEquals(new byte[]{1}, part1.get(0)[0]);
+        // 重复的key保留最后写入的value
+        Assert.assertArrayEquals(new byte[]{31}, part1.get(1)[1]);
+        Assert.assertEquals(1, files.get("2" + File.separator + "task-0.sst").size());
+        // 临时的有序段已删除
+        Assert.assertFalse(new File(dir, ".task-0-runs").exists());
+        for (File partDir : dir.listFiles()) {
+            partDir.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void compareUnsignedBytes() {
+        Assert.assertTrue(SstFileBuilder.compare(new byte[]{1, (byte) 0x80}, new byte[]{1, 0x7f}) > 0);
+        Assert.assertTrue(SstFileBuilder.compare(new byte[]{1}, new byte[]{1, 0}) < 0);
+        Assert.assertEquals(0, SstFileBuilder.compare(new byte[]{1, 2}, new byte[]{1, 2}));
+    }
+
+    private static Configuration conf() {
+        Configuration conf = Configuration.from("{" +
+                "\"column\": [\"name\", \"dstPlayerName\", \"degree\"]," +
+                "\"table\":[\"player\", \"follow\"]," +
+                "\"edgeType\": [{\"srcTag\":\"player\",\"srcPrimaryKey\":\"name\"," +
+                "\"dstTag\":\"player\",\"dstPrimaryKey\":\"dstPlayerName\"}]," +
+                "\"writeMode\": \"sst\", \"sstDir\": \"/tmp/sst\", \"partitionNum\": 4, \"vidLength\": 16," +
+                "\"taskIndex\": 3" +
+                "}");
+        Map<String, TableMeta> tableMetas = new HashMap<>();
+        tableMetas.put("player", tableMeta("player", TableType.TAG, 2));
+        tableMetas.put("follow", tableMeta("follow", TableType.EDGE_TYPE, 3));
+        Map<String, List<ColumnMeta>> columnMetas = new HashMap<>();
+        columnMetas.put("player", Arrays.asList(nullableColumnMeta("name", "string"), nullableColumnMeta("age", "int64")));
+        columnMetas.put("follow", Collections.singletonList(nullableColumnMeta("degree", "int64")));
+        SchemaManager.writeToConfiguration(conf, Arrays.asList("player", "follow"), tableMetas, columnMetas);
+        return conf;
+    }
+
+    private static List<byte[]> keys(Iterator<byte[][]> entries) {
+        List<byte[]> keys = new ArrayList<>();
+        entries.forEachRemaining(entry -> keys.add(entry[0]));
+        return keys;
+    }
+
+    private static Record record(String src, String dst, long degree) {
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn(src));
+        record.addColumn(new StringColumn(dst));
+        record.addColumn(new LongColumn(degree));
+        return record;
+    }
+}
@@ -0,0 +1,84 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.DateColumn;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.element.StringColumn;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+public class StatementBuilderTest {
+
+    @Test
+    public void escapeString() {
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        sb.appendString("plain").append(',').appendString("say \"hi\"\\\n");
+
+        // then & assert
+        Assert.assertEquals("\"plain\",\"say \\\"hi\\\"\\\\\\n\"", sb.toString());
+    }
+
+    @Test
+    public void vid() {
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        sb.appendVid("player_", "O\"Neal");
+
+        // then & assert
+        Assert.assertEquals("\"player_O\\\"Neal\"", sb.toString());
+    }
+
+    @Test
+    public void temporal() {
+        // given
+        Date date = Date.from(LocalDateTime.of(2022, 3, 4, 5, 6, 7, 8_000_000)
+                .atZone(ZoneId.systemDefault()).toInstant());
+
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        sb.appendTemporal("date", new DateColumn(date)).append(',')
+                .appendTemporal("time", new DateColumn(date)).append(',')
+                .appendTemporal("datetime", new DateColumn(date)).append(',')
+                .appendTemporal("date", new StringColumn("2022-03-04"));
+
+        // then & assert
+        Assert.assertEquals("date(\"2022-03-04\"),time(\"05:06:07.008000\"),"
+                + "datetime(\"2022-03-04T05:06:07.008000\"),date(\"2022-03-04\")", sb.toString());
+    }
+
+    @Test
+    public void rejectNonFiniteDouble() {
+        // given
+        StatementBuilder sb = new StatementBuilder();
+        sb.appendDouble(1.5);
+
+        // when
+        for (double value : new double[]{Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+            try {
+                sb.appendDouble(value);
+                Assert.fail("expected non-finite double " + value + " to be rejected");
+            } catch (DataXException e) {
+                // then & assert
+                Assert.assertEquals(NebulaGraphWriterErrorCode.ILLEGAL_VALUE, e.getErrorCode());
+            }
+        }
+        Assert.assertEquals("1.5", sb.toString());
+    }
+
+    @Test
+    public void reset() {
+        // given
+        StatementBuilder sb = StatementBuilder.local().append("INSERT");
+
+        // when
+        StatementBuilder reused = StatementBuilder.local();
+
+        // then & assert
+        Assert.assertSame(sb, reused);
+        Assert.assertEquals(0, reused.length());
+    }
+}
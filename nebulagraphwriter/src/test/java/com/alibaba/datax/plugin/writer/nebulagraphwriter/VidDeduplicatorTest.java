@@ -0,0 +1,161 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.plugin.TaskPluginCollector;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.columnMeta;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.receiver;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.tableMeta;
+
+public class VidDeduplicatorTest {
+
+    @Test
+    public void dedupeVertices() {
+        // given
+        WritePlan plan = WritePlan.compileTag("player", Arrays.asList(columnMeta("name", "string"),
+                columnMeta("age", "int64")), Arrays.asList("name", "age"));
+        List<Record> records = Arrays.asList(record("a", 1), record("b", 2), record("a", 3), record("c", 4),
+                record("b", 5));
+
+        // when
+        VidDeduplicator deduplicator = new VidDeduplicator();
+        int count = deduplicator.dedupe(plan, records);
+
+        // then & assert
+        // 后写覆盖先写 保留a=3 c=4 b=5
+        Assert.assertEquals(3, count);
+        Assert.assertArrayEquals(new int[]{2, 3, 4}, Arrays.copyOf(deduplicator.rows(), count));
+    }
+
+    @Test
+    public void dedupeEdges() {
+        // given
+        JSONObject edgeType = JSONObject.parseObject("{\"srcTag\":\"player\",\"srcPrimaryKey\":\"src\"," +
+                "\"dstTag\":\"player\",\"dstPrimaryKey\":\"dst\"}");
+        WritePlan plan = WritePlan.compileEdge("follow", Collections.singletonList(columnMeta("degree", "int64")),
+                Arrays.asList("src", "dst", "degree"), edgeType);
+        List<Record> records = Arrays.asList(edge("a", "b", 1), edge("b", "a", 2), edge("a", "b", 3));
+
+        // when
+        VidDeduplicator deduplicator = new VidDeduplicator();
+        int count = deduplicator.dedupe(plan, records);
+
+        // then & assert
+        Assert.assertEquals(2, count);
+        Assert.assertArrayEquals(new int[]{1, 2}, Arrays.copyOf(deduplicator.rows(), count));
+    }
+
+    @Test
+    public void dedupeGeneratedVids() {
+        // given
+        WritePlan plan = WritePlan.compileTag("player", Arrays.asList(columnMeta("id", "int64"),
+                columnMeta("age", "int64")), Arrays.asList("id", "age"),
+                new VidStrategy(VidStrategy.Type.INT64, VidStrategy.DEFAULT_TEMPLATE));
+        List<Record> records = Arrays.asList(record("1", 20), record("01", 21), record("2", 22));
+
+        // when
+        VidDeduplicator deduplicator = new VidDeduplicator();
+        int count = deduplicator.dedupe(plan, records);
+
+        // then & assert
+        // 1与01生成同一个int64 VID
+        Assert.assertEquals(2, count);
+        Assert.assertArrayEquals(new int[]{1, 2}, Arrays.copyOf(deduplicator.rows(), count));
+    }
+
+    @Test
+    public void keepNullKeys() {
+        // given
+        WritePlan plan = WritePlan.compileTag("player", Arrays.asList(columnMeta("name", "string"),
+                columnMeta("age", "int64")), Arrays.asList("name", "age"));
+        List<Record> records = Arrays.asList(record("a", 1), record(null, 2), record("a", 3), record(null, 4));
+
+        // when
+        VidDeduplicator deduplicator = new VidDeduplicator();
+        int count = deduplicator.dedupe(plan, records);
+
+        // then & assert
+        // VID为空的行不参与去重 留待写入时作为脏数据
+        Assert.assertEquals(3, count);
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, Arrays.copyOf(deduplicator.rows(), count));
+    }
+
+    @Test
+    public void nullVidIsDirty() {
+        // given
+        RecordingSession.Factory factory = new RecordingSession.Factory(stmt -> false);
+        List<Throwable> dirty = new ArrayList<>();
+        TaskPluginCollector collector = new TaskPluginCollector() {
+            @Override
+            public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage) {
+                dirty.add(t);
+            }
+
+            @Override
+            public void collectMessage(String key, String value) {
+            }
+        };
+        DefaultDataHandler handler = new DefaultDataHandler(Configuration.from("{" +
+                "\"column\": [\"name\", \"age\"], \"table\":[\"player\"]," +
+                "\"jdbcUrl\":\"jdbc:nebula://cba\", \"deduplicate\": true" +
+                "}"), collector);
+        handler.setSessionPool(factory.acquire("dedupe-null-vid"));
+        handler.setTableMetas(Collections.singletonMap("player", tableMeta("player", TableType.TAG)));
+        handler.setColumnMetas(Collections.singletonMap("player",
+                Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64"))));
+
+        // when
+        long count = handler.handle(receiver(Arrays.asList(record("a", 1), record(null, 2), record("a", 3))),
+                collector);
+        handler.close();
+
+        // then & assert
+        // 二分定位时两条a分属不同的子批次 各自写入
+        Assert.assertEquals(2, count);
+        Assert.assertEquals(1, dirty.size());
+        Assert.assertTrue(dirty.get(0).getMessage().contains("VID of tag player must not be null"));
+    }
+
+    @Test
+    public void reuseAcrossBatches() {
+        // given
+        WritePlan plan = WritePlan.compileTag("player", Collections.singletonList(columnMeta("name", "string")),
+                Collections.singletonList("name"));
+        VidDeduplicator deduplicator = new VidDeduplicator();
+        deduplicator.dedupe(plan, Arrays.asList(record("a", 1), record("a", 2), record("a", 3)));
+
+        // when
+        int count = deduplicator.dedupe(plan, Arrays.asList(record("x", 1), record("y", 2)));
+
+        // then & assert
+        Assert.assertEquals(2, count);
+        Assert.assertArrayEquals(new int[]{0, 1}, Arrays.copyOf(deduplicator.rows(), count));
+    }
+
+    private static Record record(String name, long age) {
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn(name));
+        record.addColumn(new LongColumn(age));
+        return record;
+    }
+
+    private static Record edge(String src, String dst, long degree) {
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn(src));
+        record.addColumn(new StringColumn(dst));
+        record.addColumn(new LongColumn(degree));
+        return record;
+    }
+}
@@ -0,0 +1,75 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.columnMeta;
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.tableMeta;
+
+public class VidRoutingTest {
+
+    @Test
+    public void sameVidSameWorker() {
+        // given
+        DefaultDataHandler handler = handler();
+
+        // when
+        Map<String, Integer> buckets = new HashMap<>();
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String name = "member_" + (i % 100);
+            int bucket = handler.bucketOf(record(name, i), 4);
+            Integer previous = buckets.put(name, bucket);
+
+            // then & assert
+            // 同一个点的所有record由同一个写入线程按接收顺序写入
+            if (previous != null) {
+                Assert.assertEquals(name, previous.intValue(), bucket);
+            }
+            Assert.assertTrue(bucket >= 0 && bucket < 4);
+            used.add(bucket);
+        }
+        Assert.assertEquals(4, used.size());
+    }
+
+    @Test
+    public void singleWorker() {
+        Assert.assertEquals(0, handler().bucketOf(record("member_1", 1), 1));
+    }
+
+    private static DefaultDataHandler handler() {
+        Configuration conf = Configuration.from("{" +
+                "\"column\": [\"name\", \"age\"]," +
+                "\"table\":[\"player\"]," +
+                "\"jdbcUrl\":\"jdbc:nebula://cba\"," +
+                "\"writeThreads\": 4" +
+                "}");
+        DefaultDataHandler handler = new DefaultDataHandler(conf, null);
+        Map<String, TableMeta> tableMetas = new HashMap<>();
+        tableMetas.put("player", tableMeta("player", TableType.TAG));
+        Map<String, List<ColumnMeta>> columnMetas = new HashMap<>();
+        columnMetas.put("player", Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64")));
+        handler.setTableMetas(tableMetas);
+        handler.setColumnMetas(columnMetas);
+        return handler;
+    }
+
+    private static Record record(String name, long age) {
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn(name));
+        record.addColumn(new LongColumn(age));
+        return record;
+    }
+}
@@ -0,0 +1,89 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.columnMeta;
+
+public class VidStrategyTest {
+
+    private final JSONObject edgeType = JSONObject.parseObject("{\"srcTag\":\"player\",\"srcPrimaryKey\":\"src\"," +
+            "\"dstTag\":\"team\",\"dstPrimaryKey\":\"dst\"}");
+
+    @Test
+    public void int64Vid() {
+        // given
+        VidStrategy strategy = VidStrategy.fromConfiguration(Configuration.from("{\"vidType\":\"int64\"}"));
+        WritePlan plan = WritePlan.compileEdge("serve", Collections.singletonList(columnMeta("since", "int64")),
+                Arrays.asList("src", "dst", "since"), edgeType, strategy);
+
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        plan.appendEdge(sb, record(new LongColumn(100), new LongColumn(200), new LongColumn(2020)));
+
+        // then & assert
+        Assert.assertEquals("100->200:(2020)", sb.toString());
+        Assert.assertEquals("100", plan.routingVid(record(new LongColumn(100), new LongColumn(200),
+                new LongColumn(2020))));
+    }
+
+    @Test
+    public void hashVid() {
+        // given
+        VidStrategy strategy = VidStrategy.fromConfiguration(Configuration.from("{\"vidType\":\"hash\"}"));
+        WritePlan plan = WritePlan.compileTag("player", Collections.singletonList(columnMeta("name", "string")),
+                Collections.singletonList("name"), strategy);
+
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        plan.appendVertex(sb, record(new StringColumn("a")));
+
+        // then & assert
+        Assert.assertEquals("hash(\"player_a\"):(\"a\")", sb.toString());
+    }
+
+    @Test
+    public void stringTemplate() {
+        // given
+        VidStrategy strategy = VidStrategy.fromConfiguration(
+                Configuration.from("{\"vidTemplate\":\"{tag}:{value}@v1\"}"));
+        WritePlan plan = WritePlan.compileEdge("serve", Collections.singletonList(columnMeta("since", "int64")),
+                Arrays.asList("src", "dst", "since"), edgeType, strategy);
+
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        plan.appendEdge(sb, record(new StringColumn("a"), new StringColumn("b"), new LongColumn(2020)));
+
+        // then & assert
+        Assert.assertEquals("\"player:a@v1\"->\"team:b@v1\":(2020)", sb.toString());
+    }
+
+    @Test(expected = DataXException.class)
+    public void illegalVidType() {
+        VidStrategy.fromConfiguration(Configuration.from("{\"vidType\":\"uuid\"}"));
+    }
+
+    @Test(expected = DataXException.class)
+    public void templateWithoutValue() {
+        VidStrategy.fromConfiguration(Configuration.from("{\"vidTemplate\":\"{tag}_\"}"));
+    }
+
+    private static Record record(Column... columns) {
+        Record record = new DefaultRecord();
+        for (Column column : columns) {
+            record.addColumn(column);
+        }
+        return record;
+    }
+}
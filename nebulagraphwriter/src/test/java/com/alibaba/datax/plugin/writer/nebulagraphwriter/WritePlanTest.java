@@ -0,0 +1,104 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.alibaba.datax.plugin.writer.nebulagraphwriter.WriterFixtures.columnMeta;
+
+public class WritePlanTest {
+
+    @Test
+    public void tagPlan() {
+        // given
+        List<ColumnMeta> colMetas = Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64"));
+        // column的顺序与schema顺序不一致
+        WritePlan plan = WritePlan.compileTag("player", colMetas, Arrays.asList("age", "name"));
+        Record record = new DefaultRecord();
+        record.addColumn(new LongColumn(25));
+        record.addColumn(new StringColumn("zhangsan"));
+
+        // when
+        StatementBuilder sb = new StatementBuilder().append(plan.header);
+        plan.appendVertex(sb, record);
+
+        // then & assert
+        Assert.assertEquals("INSERT VERTEX player (name,age) VALUES \"player_zhangsan\":(\"zhangsan\",25)", sb.toString());
+        Assert.assertEquals("player_zhangsan", plan.routingVid(record));
+    }
+
+    @Test
+    public void edgePlan() {
+        // given
+        List<ColumnMeta> colMetas = Arrays.asList(columnMeta("degree", "int64"));
+        JSONObject edgeType = JSONObject.parseObject("{\"srcTag\":\"player\",\"srcPrimaryKey\":\"srcPlayerName\"," +
+                "\"dstTag\":\"player\",\"dstPrimaryKey\":\"dstPlayerName\"}");
+        WritePlan plan = WritePlan.compileEdge("follow", colMetas,
+                Arrays.asList("srcPlayerName", "dstPlayerName", "degree"), edgeType);
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn("a"));
+        record.addColumn(new StringColumn("b"));
+        record.addColumn(new LongColumn(90));
+
+        // when
+        StatementBuilder sb = new StatementBuilder().append(plan.header);
+        plan.appendEdge(sb, record);
+
+        // then & assert
+        Assert.assertEquals("INSERT EDGE follow (degree) VALUES \"player_a\"->\"player_b\":(90)", sb.toString());
+        Assert.assertEquals("player_a", plan.routingVid(record));
+    }
+
+    @Test
+    public void edgeWithRank() {
+        // given
+        JSONObject edgeType = JSONObject.parseObject("{\"srcTag\":\"player\",\"srcPrimaryKey\":\"src\"," +
+                "\"dstTag\":\"player\",\"dstPrimaryKey\":\"dst\",\"rankKey\":\"year\"}");
+        WritePlan plan = WritePlan.compileEdge("serve", Arrays.asList(columnMeta("degree", "int64")),
+                Arrays.asList("src", "dst", "year", "degree"), edgeType);
+        Record first = new DefaultRecord();
+        first.addColumn(new StringColumn("a"));
+        first.addColumn(new StringColumn("b"));
+        first.addColumn(new LongColumn(2019));
+        first.addColumn(new LongColumn(90));
+        Record second = new DefaultRecord();
+        second.addColumn(new StringColumn("a"));
+        second.addColumn(new StringColumn("b"));
+        second.addColumn(new LongColumn(2020));
+        second.addColumn(new LongColumn(80));
+
+        // when
+        StatementBuilder sb = new StatementBuilder().append(plan.header);
+        plan.appendEdge(sb, first);
+
+        // then & assert
+        Assert.assertEquals("INSERT EDGE serve (degree) VALUES \"player_a\"->\"player_b\"@2019:(90)", sb.toString());
+        // rank不同的边不是同一条边 去重时不合并
+        Assert.assertFalse(plan.sameKey(first, second));
+        Assert.assertTrue(plan.keyHash(first) != plan.keyHash(second));
+    }
+
+    @Test
+    public void nullValue() {
+        // given
+        WritePlan plan = WritePlan.compileTag("player",
+                Arrays.asList(columnMeta("name", "string"), columnMeta("age", "int64")), Arrays.asList("name", "age"));
+        Record record = new DefaultRecord();
+        record.addColumn(new StringColumn("lisi"));
+        record.addColumn(new LongColumn((Long) null));
+
+        // when
+        StatementBuilder sb = new StatementBuilder();
+        plan.appendVertex(sb, record);
+
+        // then & assert
+        Assert.assertEquals("\"player_lisi\":(\"lisi\",NULL)", sb.toString());
+    }
+}
@@ -0,0 +1,105 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.core.transport.record.DefaultRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WriteWorkerTest {
+
+    @Test
+    public void writeAllSubmittedBatches() throws Exception {
+        // given
+        AtomicInteger batches = new AtomicInteger();
+        WriteWorker worker = new WriteWorker("test-writer", 2, batch -> {
+            batches.incrementAndGet();
+            return batch.size();
+        });
+        worker.start();
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            worker.submit(buildBatch(100));
+        }
+        long affectedRows = worker.finish();
+
+        // then & assert
+        Assert.assertEquals(10, batches.get());
+        Assert.assertEquals(1000, affectedRows);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void propagateWriterFailure() throws Exception {
+        // given
+        WriteWorker worker = new WriteWorker("test-writer", 1, batch -> {
+            throw new RuntimeException("graphd unavailable");
+        });
+        worker.start();
+
+        // when
+        worker.submit(buildBatch(1));
+        worker.finish();
+    }
+
+    @Test
+    public void abortWaitsForWriter() throws Exception {
+        // given
+        CountDownLatch started = new CountDownLatch(1);
+        WriteWorker worker = new WriteWorker("test-writer", 1, batch -> {
+            started.countDown();
+            Thread.sleep(60000);
+            return batch.size();
+        });
+        worker.start();
+        worker.submit(buildBatch(1));
+        started.await();
+
+        // when & then & assert
+        // 可中断的写入线程在超时前退出
+        Assert.assertTrue(worker.abort(5000));
+    }
+
+    @Test
+    public void abortTimesOutOnStuckWriter() throws Exception {
+        // given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stuck = new CountDownLatch(1);
+        WriteWorker worker = new WriteWorker("test-writer", 1, batch -> {
+            started.countDown();
+            // 模拟不响应中断的网络调用
+            while (true) {
+                try {
+                    stuck.await();
+                    return batch.size();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        worker.start();
+        worker.submit(buildBatch(1));
+        started.await();
+
+        // when
+        boolean stopped = worker.abort(50);
+
+        // then & assert
+        Assert.assertFalse(stopped);
+        stuck.countDown();
+    }
+
+    private List<Record> buildBatch(int size) {
+        List<Record> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Record record = new DefaultRecord();
+            record.addColumn(new StringColumn("member_" + i));
+            batch.add(record);
+        }
+        return batch;
+    }
+}
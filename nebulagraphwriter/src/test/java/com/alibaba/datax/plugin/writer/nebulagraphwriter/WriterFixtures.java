@@ -0,0 +1,55 @@
+package com.alibaba.datax.plugin.writer.nebulagraphwriter;
+
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.plugin.RecordReceiver;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 测试与基准测试共用的元信息及数据构造方法
+ */
+public class WriterFixtures {
+
+    public static ColumnMeta columnMeta(String field, String type) {
+        ColumnMeta colMeta = new ColumnMeta();
+        colMeta.field = field;
+        colMeta.type = type;
+        return colMeta;
+    }
+
+    // 允许为NULL的字段
+    public static ColumnMeta nullableColumnMeta(String field, String type) {
+        ColumnMeta colMeta = columnMeta(field, type);
+        colMeta.Null = "YES";
+        return colMeta;
+    }
+
+    public static TableMeta tableMeta(String name, TableType tableType) {
+        TableMeta tableMeta = new TableMeta();
+        tableMeta.name = name;
+        tableMeta.tableType = tableType;
+        return tableMeta;
+    }
+
+    public static TableMeta tableMeta(String name, TableType tableType, int id) {
+        TableMeta tableMeta = tableMeta(name, tableType);
+        tableMeta.id = id;
+        return tableMeta;
+    }
+
+    // 依次返回records的reader端
+    public static RecordReceiver receiver(List<Record> records) {
+        Iterator<Record> iterator = records.iterator();
+        return new RecordReceiver() {
+            @Override
+            public Record getFromReader() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+    }
+}